@@ -0,0 +1,474 @@
+package connectfour;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * This class finds the best move and score of many positions at once for
+ * offline analysis. Every position is searched on a fixed pool of threads,
+ * each with a search of its own that is reused from one position to the
+ * next, and all of them share one transposition table, so positions from
+ * the same games help each other. The searches are set up like the AI of
+ * a game, so the scores match what it would find. The table is aged once
+ * per window of positions rather than by every search, so entries of the
+ * positions nearby are kept while those of positions long done give way.
+ * Results are handed back in the order the positions came in, and only a
+ * few positions per thread are in flight at any time, so a batch of any
+ * size runs in constant memory.
+ *
+ * <p>
+ * Positions do not record whose turn it is. The player with fewer pieces
+ * is to move, and the starting player when both have as many.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class BatchAnalyzer {
+
+	/** The column of the result of a position that has no moves left. */
+	public static final int NO_MOVE = -1;
+
+	/** Number of rows of the board recorded games are played on. */
+	private static final int ROWS = 6;
+
+	/** Number of columns of the board recorded games are played on. */
+	private static final int COLS = 7;
+
+	/** How many positions per thread may be in flight at once. */
+	private static final int WINDOW_PER_THREAD = 4;
+
+	/** Scores above this are wins that are a number of plies away. */
+	private static final int WIN_THRESHOLD = Negamax.WIN_SCORE
+			- Negamax.MAX_CELLS - 1;
+
+	/** How many plies each position is searched. */
+	private final int depth;
+
+	/** How many milliseconds each position may be searched. */
+	private final long timeLimit;
+
+	/** The player who moved first in every position. */
+	private final Player startingPlayer;
+
+	/**
+	 * The table every search of the batch shares. A batch may mix boards
+	 * of any size and win condition, since the search keeps their entries
+	 * apart.
+	 */
+	private final TranspositionTable table;
+
+	/** The pool the positions are searched on. */
+	private final ExecutorService pool;
+
+	/** The number of threads in the pool. */
+	private final int threads;
+
+	/** The search of each thread of the pool. */
+	private final ThreadLocal<Negamax> searches;
+
+	/**
+	 * This class is the result of the analysis of one position.
+	 */
+	public static final class Result {
+
+		/** The position of the result in the batch, starting at zero. */
+		private final long index;
+
+		/** The position that was analyzed. */
+		private final Position position;
+
+		/** The player to move. */
+		private final Player player;
+
+		/** The best column, or NO_MOVE. */
+		private final int col;
+
+		/** The score of the best move for the player to move. */
+		private final int score;
+
+		/** The deepest iteration of the search that finished. */
+		private final int depth;
+
+		/** How many positions the search visited. */
+		private final long nodes;
+
+		/**
+		 * Constructor that instantiates a new result.
+		 *
+		 * @param index
+		 *            The position of the result in the batch
+		 * @param position
+		 *            The position that was analyzed
+		 * @param player
+		 *            The player to move
+		 * @param col
+		 *            The best column, or NO_MOVE
+		 * @param score
+		 *            The score of the best move for the player to move
+		 * @param depth
+		 *            The deepest iteration of the search that finished
+		 * @param nodes
+		 *            How many positions the search visited
+		 */
+		Result(final long index, final Position position, final Player player,
+				final int col, final int score, final int depth,
+				final long nodes) {
+			this.index = index;
+			this.position = position;
+			this.player = player;
+			this.col = col;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Getter method that returns where the position was in the batch.
+		 *
+		 * @return long The index of the position, starting at zero
+		 */
+		public long getIndex() {
+			return index;
+		}
+
+		/**
+		 * Getter method that returns the position that was analyzed.
+		 *
+		 * @return Position The position
+		 */
+		public Position getPosition() {
+			return position;
+		}
+
+		/**
+		 * Getter method that returns the player to move.
+		 *
+		 * @return Player The player the score is rated for
+		 */
+		public Player getPlayer() {
+			return player;
+		}
+
+		/**
+		 * Getter method that returns the best column.
+		 *
+		 * @return int The column, or NO_MOVE if the game is already over
+		 */
+		public int getCol() {
+			return col;
+		}
+
+		/**
+		 * Getter method that returns the score of the best move for the
+		 * player to move. Wins score close to Negamax.WIN_SCORE and losses
+		 * close to its negative.
+		 *
+		 * @return int The score
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/**
+		 * Getter method that returns how many plies the result is away,
+		 * if the search proved a win or a loss.
+		 *
+		 * @return int The number of plies, or -1 if nothing was proven
+		 */
+		public int getPliesToEnd() {
+			if (Math.abs(score) <= WIN_THRESHOLD) {
+				return -1;
+			}
+			return Negamax.WIN_SCORE - Math.abs(score);
+		}
+
+		/**
+		 * Getter method that returns the deepest iteration of the search
+		 * that finished.
+		 *
+		 * @return int The depth
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Getter method that returns how many positions the search
+		 * visited.
+		 *
+		 * @return long The number of nodes
+		 */
+		public long getNodes() {
+			return nodes;
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new analyzer with its threads and
+	 * its table.
+	 *
+	 * @param threads
+	 *            How many positions are searched at once
+	 * @param depth
+	 *            How many plies each position is searched
+	 * @param timeLimit
+	 *            How many milliseconds each position may be searched
+	 * @param tableSize
+	 *            How many megabytes the shared table uses
+	 * @param startingPlayer
+	 *            The player who moved first in every position
+	 */
+	public BatchAnalyzer(final int threads, final int depth,
+			final long timeLimit, final int tableSize,
+			final Player startingPlayer) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1");
+		}
+		this.depth = depth;
+		this.timeLimit = timeLimit;
+		this.startingPlayer = startingPlayer;
+		this.table = new TranspositionTable(tableSize);
+		this.threads = threads;
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "BatchAnalyzer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.searches = ThreadLocal.withInitial(() -> {
+			Negamax search = new Negamax(depth, timeLimit);
+			search.setEvaluator(new ThreatEvaluator());
+			search.setKillerMoves(true);
+			search.setHistoryHeuristic(true);
+			search.setTranspositionTable(table);
+			search.setAgingTable(false);
+			return search;
+		});
+	}
+
+	/**
+	 * Main method that analyzes a file of recorded games, one per line as
+	 * the columns played from the empty board, and prints the result of
+	 * every position as CSV. The throughput is printed to standard error.
+	 *
+	 * @param args
+	 *            The file of recorded games, and optionally the number of
+	 *            threads, the depth and the table size in megabytes
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: BatchAnalyzer <games> [threads] "
+					+ "[depth] [table megabytes]");
+			return;
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int tableSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+		BatchAnalyzer analyzer = new BatchAnalyzer(threads, depth,
+				Long.MAX_VALUE / 2, tableSize, Player.PLAYER1);
+		System.out.println("index,player,col,score,depth,nodes");
+		long start = System.nanoTime();
+		long count;
+		try (BufferedReader reader = Files.newBufferedReader(
+				Paths.get(args[0]), StandardCharsets.UTF_8)) {
+			Iterator<Position> positions = reader.lines().map(String::trim)
+					.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+					.map(BatchAnalyzer::replay).iterator();
+			count = analyzer.analyze(positions, result -> System.out.println(
+					result.getIndex() + "," + result.getPlayer() + ","
+					+ result.getCol() + "," + result.getScore() + ","
+					+ result.getDepth() + "," + result.getNodes()));
+		} finally {
+			analyzer.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d positions in %.2f s, %.1f positions/s%n",
+				count, seconds, count / seconds);
+	}
+
+	/**
+	 * Helper method that plays a recorded game on the standard board.
+	 *
+	 * @param moves
+	 *            The columns played from the empty board, one digit each
+	 * @return Position The position the game reached
+	 */
+	private static Position replay(final String moves) {
+		Board board = Board.create(ROWS, COLS, Bitboard.CONNECT_FOUR);
+		Player player = Player.PLAYER1;
+		for (int i = 0; i < moves.length(); i++) {
+			board.play(moves.charAt(i) - '0', player);
+			player = player.next();
+		}
+		return board.snapshot();
+	}
+
+	/**
+	 * Method that analyzes a stream of positions and passes every result
+	 * on as soon as it and every result before it are done. The calling
+	 * thread reads the positions and runs the consumer, so neither has to
+	 * be thread safe.
+	 *
+	 * @param positions
+	 *            The positions to analyze
+	 * @param results
+	 *            The consumer every result is passed to, in the order of
+	 *            the positions
+	 * @return long How many positions were analyzed
+	 */
+	public long analyze(final Iterator<Position> positions,
+			final Consumer<Result> results) {
+		Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+		int window = threads * WINDOW_PER_THREAD;
+		long count = 0;
+		try {
+			while (positions.hasNext()) {
+				final Position position = positions.next();
+				final long index = count++;
+				if (index % window == 0) {
+					table.newSearch();
+				}
+				pending.add(pool.submit(() -> analyze(index, position)));
+				if (pending.size() >= window) {
+					results.accept(await(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				results.accept(await(pending.poll()));
+			}
+		} finally {
+			for (Future<Result> future : pending) {
+				future.cancel(false);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Method that analyzes an array of positions.
+	 *
+	 * @param positions
+	 *            The positions to analyze
+	 * @return Result[] The result of every position, in the same order
+	 */
+	public Result[] analyze(final Position[] positions) {
+		Result[] results = new Result[positions.length];
+		analyze(Arrays.asList(positions).iterator(),
+				result -> results[(int) result.getIndex()] = result);
+		return results;
+	}
+
+	/**
+	 * Helper method that searches one position with the search of the
+	 * calling thread.
+	 *
+	 * @param index
+	 *            The position of the position in the batch
+	 * @param position
+	 *            The position
+	 * @return Result The best move and its score
+	 */
+	private Result analyze(final long index, final Position position) {
+		Board board = position.toBoard();
+		Player player = getPlayer(position);
+		if (board.hasWon(player.next())) {
+			return new Result(index, position, player, NO_MOVE,
+					-Negamax.WIN_SCORE, 0, 0);
+		}
+		if (board.hasWon(player)) {
+			return new Result(index, position, player, NO_MOVE,
+					Negamax.WIN_SCORE, 0, 0);
+		}
+		Negamax search = searches.get();
+		Move move = search.search(board, player);
+		if (move == null) {
+			return new Result(index, position, player, NO_MOVE, 0, 0, 0);
+		}
+		return new Result(index, position, player, move.getCol(),
+				move.getRating(), search.getCompletedDepth(),
+				search.getNodes());
+	}
+
+	/**
+	 * Helper method that works out whose turn it is in a position.
+	 *
+	 * @param position
+	 *            The position
+	 * @return Player The player with fewer pieces, or the starting player
+	 *         if both have as many
+	 */
+	private Player getPlayer(final Position position) {
+		int pieces1 = 0;
+		int pieces2 = 0;
+		for (long word : position.getWords(Player.PLAYER1)) {
+			pieces1 += Long.bitCount(word);
+		}
+		for (long word : position.getWords(Player.PLAYER2)) {
+			pieces2 += Long.bitCount(word);
+		}
+		if (pieces1 == pieces2) {
+			return startingPlayer;
+		}
+		return pieces1 < pieces2 ? Player.PLAYER1 : Player.PLAYER2;
+	}
+
+	/**
+	 * Helper method that waits for the analysis of a position.
+	 *
+	 * @param future
+	 *            The analysis
+	 * @return Result The result of the analysis
+	 */
+	private static Result await(final Future<Result> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while analyzing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Analysis failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Getter method that returns how many plies each position is searched.
+	 *
+	 * @return int The depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Getter method that returns how long each position may be searched.
+	 *
+	 * @return long The time limit in milliseconds
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Method that stops the threads of the analyzer. It cannot be used
+	 * afterwards.
+	 *
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+}
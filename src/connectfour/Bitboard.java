@@ -0,0 +1,465 @@
+package connectfour;
+
+import java.util.Random;
+
+/**
+ * This class is a compact representation of a connect four game board. The
+ * cells owned by each player are stored as the bits of a single long, so it
+ * can only hold boards with up to 64 cells including one spare cell on top
+ * of each column. The number of pieces in each column is stored in a
+ * height array.
+ * The bits are laid out column by column starting at the bottom of the board, and every
+ * column has one extra empty bit on top of it so that pieces in different
+ * columns never touch when the masks are shifted. The board also keeps a
+ * Zobrist hash of its pieces up to date, which the AI uses to look positions
+ * up in its transposition table.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class Bitboard implements Board {
+
+	/** A random key for every bit of both players, used for hashing. */
+	private static final long[] ZOBRIST = new long[2 * Long.SIZE];
+
+	static {
+		Random random = new Random(0x5EEDC0FFEEL);
+		for (int i = 0; i < ZOBRIST.length; i++) {
+			ZOBRIST[i] = random.nextLong();
+		}
+	}
+
+	/** Number of pieces in a row that win standard connect four. */
+	static final int CONNECT_FOUR = 4;
+
+	/** Number of rows on the board. */
+	private final int rows;
+
+	/** Number of columns on the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
+
+	/** Number of bits used by one column, including the empty top bit. */
+	private final int height;
+
+	/** Every cell of the board, without the empty bit on top of each column. */
+	private final long cells;
+
+	/** Cells owned by the first player. */
+	private long player1;
+
+	/** Cells owned by the second player. */
+	private long player2;
+
+	/** Number of pieces that have been dropped in each column. */
+	private final int[] heights;
+
+	/** Number of pieces on the board. */
+	private int moves;
+
+	/** Zobrist hash of the pieces on the board. */
+	private long hash;
+
+	/**
+	 * Constructor that instantiates a new empty board of the given size
+	 * where four pieces in a row win.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 */
+	public Bitboard(final int rows, final int cols) {
+		this(rows, cols, CONNECT_FOUR);
+	}
+
+	/**
+	 * Constructor that instantiates a new empty board of the given size.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 */
+	public Bitboard(final int rows, final int cols, final int connect) {
+		if (rows < 1 || cols < 1 || !fits(rows, cols)) {
+			throw new IllegalArgumentException("A " + rows + "x" + cols
+					+ " board does not fit in a bitboard");
+		}
+		if (connect < 2) {
+			throw new IllegalArgumentException("At least two pieces in a row "
+					+ "must be needed to win");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		this.height = rows + 1;
+		this.heights = new int[cols];
+		long column = (1L << rows) - 1;
+		long all = 0;
+		for (int col = 0; col < cols; col++) {
+			all |= column << (col * height);
+		}
+		this.cells = all;
+	}
+
+	/**
+	 * Constructor that instantiates a new board with the same size and
+	 * pieces as a snapshot. The heights of the columns and the hash are
+	 * rebuilt from the masks of the snapshot.
+	 *
+	 * @param position
+	 *            The snapshot the board is created from
+	 */
+	public Bitboard(final Position position) {
+		this(position.getRows(), position.getCols(), position.getConnect());
+		player1 = position.getMask(Player.PLAYER1);
+		player2 = position.getMask(Player.PLAYER2);
+		long occupied = player1 | player2;
+		long column = (1L << height) - 1;
+		for (int col = 0; col < cols; col++) {
+			heights[col] = Long.bitCount(occupied & (column << (col * height)));
+		}
+		moves = Long.bitCount(occupied);
+		for (long bits = player1; bits != 0; bits &= bits - 1) {
+			hash ^= ZOBRIST[Long.numberOfTrailingZeros(bits)];
+		}
+		for (long bits = player2; bits != 0; bits &= bits - 1) {
+			hash ^= ZOBRIST[Long.SIZE + Long.numberOfTrailingZeros(bits)];
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new board with the same size and
+	 * pieces as another board.
+	 *
+	 * @param other
+	 *            The board that is going to be copied
+	 */
+	private Bitboard(final Bitboard other) {
+		this.rows = other.rows;
+		this.cols = other.cols;
+		this.connect = other.connect;
+		this.height = other.height;
+		this.cells = other.cells;
+		this.player1 = other.player1;
+		this.player2 = other.player2;
+		this.heights = other.heights.clone();
+		this.moves = other.moves;
+		this.hash = other.hash;
+	}
+
+	/**
+	 * Method that checks if a board of the given size fits in a bitboard.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @return boolean If every cell and the spare cell on top of each
+	 *         column fit in a long
+	 */
+	public static boolean fits(final int rows, final int cols) {
+		return (long) (rows + 1) * cols <= Long.SIZE;
+	}
+
+	/**
+	 * Method that returns an independent copy of this board.
+	 *
+	 * @return Bitboard A copy of the board
+	 */
+	@Override
+	public Bitboard copy() {
+		return new Bitboard(this);
+	}
+
+	/**
+	 * Method that takes an immutable snapshot of this board. This only
+	 * copies the two masks of the players, so it takes constant time.
+	 *
+	 * @return Position A snapshot of the board
+	 */
+	@Override
+	public Position snapshot() {
+		return new Position(rows, cols, connect, player1, player2);
+	}
+
+	/**
+	 * Method that checks whether or not a column still has room for
+	 * another piece.
+	 *
+	 * @param col
+	 *            The column that is being checked
+	 * @return boolean If a piece can be dropped in the column
+	 */
+	@Override
+	public boolean canPlay(final int col) {
+		return heights[col] < rows;
+	}
+
+	/**
+	 * Method that drops a piece for a player into a column. The column
+	 * must not be full.
+	 *
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @param player
+	 *            The player who owns the piece
+	 * @return int The row the piece landed in, where row zero is the top
+	 *         of the board
+	 */
+	@Override
+	public int play(final int col, final Player player) {
+		int index = col * height + heights[col];
+		long bit = 1L << index;
+		if (player == Player.PLAYER1) {
+			player1 |= bit;
+			hash ^= ZOBRIST[index];
+		} else {
+			player2 |= bit;
+			hash ^= ZOBRIST[Long.SIZE + index];
+		}
+		heights[col]++;
+		moves++;
+		return rows - heights[col];
+	}
+
+	/**
+	 * Method that removes the top piece of a column. This reverses the
+	 * last call to play for that column.
+	 *
+	 * @param col
+	 *            The column the piece is removed from
+	 */
+	@Override
+	public void undo(final int col) {
+		heights[col]--;
+		moves--;
+		int index = col * height + heights[col];
+		long bit = 1L << index;
+		if ((player1 & bit) != 0) {
+			player1 &= ~bit;
+			hash ^= ZOBRIST[index];
+		} else {
+			player2 &= ~bit;
+			hash ^= ZOBRIST[Long.SIZE + index];
+		}
+	}
+
+	/**
+	 * Method that checks to see if a player has enough pieces in a row to
+	 * win. The mask of the player is shifted onto itself a few times for
+	 * every direction, so the check takes the same handful of operations
+	 * no matter where the pieces are on the board.
+	 *
+	 * @param player
+	 *            The player who is being checked
+	 * @return boolean If the player has won
+	 */
+	@Override
+	public boolean hasWon(final Player player) {
+		long mask = getMask(player);
+		return isConnected(mask, 1, connect)
+				|| isConnected(mask, height, connect)
+				|| isConnected(mask, height - 1, connect)
+				|| isConnected(mask, height + 1, connect);
+	}
+
+	/**
+	 * Helper method that checks for a number of bits in a row in one
+	 * direction. Every bit that survives the first AND starts a run of
+	 * two, and every AND after that doubles the length of the runs until
+	 * the last one tops them up to the length that is needed. Four in a
+	 * row takes two ANDs.
+	 *
+	 * @param mask
+	 *            The cells of a single player
+	 * @param shift
+	 *            The distance between two neighbouring cells in the
+	 *            direction that is being checked
+	 * @param connect
+	 *            How many bits in a row are needed
+	 * @return boolean If there are enough bits in a row
+	 */
+	private static boolean isConnected(final long mask, final int shift,
+			final int connect) {
+		long runs = mask;
+		int length = 1;
+		while (length * 2 <= connect) {
+			runs &= runs >>> (length * shift);
+			length *= 2;
+		}
+		if (length < connect) {
+			runs &= runs >>> ((connect - length) * shift);
+		}
+		return runs != 0;
+	}
+
+	/**
+	 * Method that finds the threats of a player: every empty cell that
+	 * would win the game if the player had a piece in it, whether or not
+	 * a piece can be dropped there yet.
+	 *
+	 * @param player
+	 *            The player whose threats are found
+	 * @return long A mask with one bit set for every threat
+	 */
+	public long getThreats(final Player player) {
+		long mask = getMask(player);
+		long threats = findGaps(mask, 1) | findGaps(mask, height)
+				| findGaps(mask, height - 1) | findGaps(mask, height + 1);
+		return threats & cells & ~(player1 | player2);
+	}
+
+	/**
+	 * Helper method that finds the cells that are the only gap in a row
+	 * of pieces in one direction. Every place the gap can take in the row
+	 * is tried, and for each the other cells of the row are shifted onto
+	 * the gap and ANDed together.
+	 *
+	 * @param mask
+	 *            The cells of a single player
+	 * @param shift
+	 *            The distance between two neighbouring cells in the
+	 *            direction that is being checked
+	 * @return long The cells that complete a row
+	 */
+	private long findGaps(final long mask, final int shift) {
+		long gaps = 0;
+		for (int gap = 0; gap < connect; gap++) {
+			long runs = -1L;
+			for (int i = 0; i < connect && runs != 0; i++) {
+				int distance = (i - gap) * shift;
+				if (distance >= Long.SIZE || distance <= -Long.SIZE) {
+					runs = 0;
+				} else if (distance > 0) {
+					runs &= mask >>> distance;
+				} else if (distance < 0) {
+					runs &= mask << -distance;
+				}
+			}
+			gaps |= runs;
+		}
+		return gaps;
+	}
+
+	/**
+	 * Getter method that returns every cell of the board.
+	 *
+	 * @return long A mask with one bit set for every cell
+	 */
+	public long getCells() {
+		return cells;
+	}
+
+	/**
+	 * Getter method that returns which player owns a cell.
+	 *
+	 * @param row
+	 *            The row of the cell, where row zero is the top of the
+	 *            board
+	 * @param col
+	 *            The column of the cell
+	 * @return Player The owner of the cell, or NONE if it is empty
+	 */
+	@Override
+	public Player getOwner(final int row, final int col) {
+		long bit = 1L << (col * height + rows - 1 - row);
+		if ((player1 & bit) != 0) {
+			return Player.PLAYER1;
+		}
+		if ((player2 & bit) != 0) {
+			return Player.PLAYER2;
+		}
+		return Player.NONE;
+	}
+
+	/**
+	 * Getter method that returns the cells owned by a player.
+	 *
+	 * @param player
+	 *            The player whose cells are returned
+	 * @return long A mask with one bit set for every cell of the player
+	 */
+	public long getMask(final Player player) {
+		return player == Player.PLAYER1 ? player1 : player2;
+	}
+
+	/**
+	 * Getter method that returns the Zobrist hash of the board. Two boards
+	 * with the same pieces always have the same hash, no matter in which
+	 * order the pieces were played.
+	 *
+	 * @return long The hash of the board
+	 */
+	@Override
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Getter method that returns how many pieces are in a column.
+	 *
+	 * @param col
+	 *            The column that is being checked
+	 * @return int The number of pieces in the column
+	 */
+	@Override
+	public int getHeight(final int col) {
+		return heights[col];
+	}
+
+	/**
+	 * Getter method that returns how many pieces are on the board.
+	 *
+	 * @return int The number of pieces on the board
+	 */
+	@Override
+	public int getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Method that checks to see if every cell of the board is taken.
+	 *
+	 * @return boolean If there are no more moves to make
+	 */
+	@Override
+	public boolean isFull() {
+		return moves == rows * cols;
+	}
+
+	/**
+	 * Getter method that returns the number of rows on the board.
+	 *
+	 * @return int The number of rows
+	 */
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Getter method that returns the number of columns on the board.
+	 *
+	 * @return int The number of columns
+	 */
+	@Override
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 *
+	 * @return int The length of a winning row
+	 */
+	@Override
+	public int getConnect() {
+		return connect;
+	}
+}
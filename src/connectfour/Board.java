@@ -0,0 +1,154 @@
+package connectfour;
+
+/**
+ * This interface is a game board that the game and the AI play on. A board
+ * has any number of rows and columns, and a player wins by getting a number
+ * of pieces in a row, which is four in standard connect four. Boards small
+ * enough to fit in a single long are a Bitboard, and larger boards are a
+ * GridBoard.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public interface Board {
+
+	/**
+	 * Method that creates a new empty board. The fastest kind of board that
+	 * can hold the given size is used.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @return Board The new board
+	 */
+	static Board create(final int rows, final int cols, final int connect) {
+		if (Bitboard.fits(rows, cols)) {
+			return new Bitboard(rows, cols, connect);
+		}
+		return new GridBoard(rows, cols, connect);
+	}
+
+	/**
+	 * Method that returns an independent copy of this board.
+	 *
+	 * @return Board A copy of the board
+	 */
+	Board copy();
+
+	/**
+	 * Method that takes an immutable snapshot of this board.
+	 *
+	 * @return Position A snapshot of the board
+	 */
+	Position snapshot();
+
+	/**
+	 * Method that checks whether or not a column still has room for
+	 * another piece.
+	 *
+	 * @param col
+	 *            The column that is being checked
+	 * @return boolean If a piece can be dropped in the column
+	 */
+	boolean canPlay(int col);
+
+	/**
+	 * Method that drops a piece for a player into a column. The column
+	 * must not be full.
+	 *
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @param player
+	 *            The player who owns the piece
+	 * @return int The row the piece landed in, where row zero is the top
+	 *         of the board
+	 */
+	int play(int col, Player player);
+
+	/**
+	 * Method that removes the top piece of a column. Moves must be undone
+	 * in the reverse order they were played.
+	 *
+	 * @param col
+	 *            The column the piece is removed from
+	 */
+	void undo(int col);
+
+	/**
+	 * Method that checks to see if a player has enough pieces in a row to
+	 * win the game.
+	 *
+	 * @param player
+	 *            The player who is being checked
+	 * @return boolean If the player has won
+	 */
+	boolean hasWon(Player player);
+
+	/**
+	 * Getter method that returns which player owns a cell.
+	 *
+	 * @param row
+	 *            The row of the cell, where row zero is the top of the
+	 *            board
+	 * @param col
+	 *            The column of the cell
+	 * @return Player The owner of the cell, or NONE if it is empty
+	 */
+	Player getOwner(int row, int col);
+
+	/**
+	 * Getter method that returns the Zobrist hash of the board. Two boards
+	 * with the same pieces always have the same hash, no matter in which
+	 * order the pieces were played.
+	 *
+	 * @return long The hash of the board
+	 */
+	long getHash();
+
+	/**
+	 * Getter method that returns how many pieces are in a column.
+	 *
+	 * @param col
+	 *            The column that is being checked
+	 * @return int The number of pieces in the column
+	 */
+	int getHeight(int col);
+
+	/**
+	 * Getter method that returns how many pieces are on the board.
+	 *
+	 * @return int The number of pieces on the board
+	 */
+	int getMoves();
+
+	/**
+	 * Method that checks to see if every cell of the board is taken.
+	 *
+	 * @return boolean If there are no more moves to make
+	 */
+	boolean isFull();
+
+	/**
+	 * Getter method that returns the number of rows on the board.
+	 *
+	 * @return int The number of rows
+	 */
+	int getRows();
+
+	/**
+	 * Getter method that returns the number of columns on the board.
+	 *
+	 * @return int The number of columns
+	 */
+	int getCols();
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 *
+	 * @return int The length of a winning row
+	 */
+	int getConnect();
+}
@@ -2,6 +2,7 @@ package connectfour;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -10,6 +11,8 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 
+import connectfour.server.GameServer;
+
 /**
  * This class creates a JFrame to add the ConnectFourGUI to it and provides
  * different options as well like exiting the game, and the option of creating a
@@ -38,6 +41,15 @@ public class ConnectFour {
 	/** Switch the opponent to player. */
 	private static JMenuItem menuPlayer;
 
+	/** Switch the opponent to a player or AI on a game server. */
+	private static JMenuItem menuRemote;
+
+	/** Takes back the last move. */
+	private static JMenuItem menuUndo;
+
+	/** Plays again the last move that was taken back. */
+	private static JMenuItem menuRedo;
+
 	/** Changes the color of the player. */
 	private static JMenuItem menuSwitchColors;
 
@@ -82,19 +94,37 @@ public class ConnectFour {
 			public void actionPerformed(final ActionEvent e) {
 				if (e.getSource() == menuPlayer) {
 					Player player = selectPlayer();
+					board.endGame();
 					frame.remove(board);
 					board = new ConnectFourGUI(player, false);
 					clearBoard();
 				}
 				if (e.getSource() == menuAI) {
 					Player player = selectPlayer();
+					board.endGame();
 					frame.remove(board);
 					board = new ConnectFourGUI(player, true);
 					clearBoard();
 				}
+				if (e.getSource() == menuRemote) {
+					ConnectFourGUI remote = connectRemote();
+					if (remote != null) {
+						board.endGame();
+						frame.remove(board);
+						board = remote;
+						clearBoard();
+					}
+				}
+				if (e.getSource() == menuUndo) {
+					board.undoMove();
+				}
+				if (e.getSource() == menuRedo) {
+					board.redoMove();
+				}
 				if (e.getSource() == menuSwitchColors) {
 					if (alertMessage() == 0) {
 						Player player = selectPlayer().next();
+						board.endGame();
 						frame.remove(board);
 						board = new ConnectFourGUI(player, getAIStatus());
 						clearBoard();
@@ -130,6 +160,57 @@ public class ConnectFour {
 				}
 				return Player.PLAYER2;
 			}
+
+			/**
+			 * This method asks the user for a game server and a game
+			 * to join, and connects a new board to it.
+			 * 
+			 * @return ConnectFourGUI The remote board, or null if the
+			 * 		   user cancelled or the server cannot be reached
+			 */
+			private ConnectFourGUI connectRemote() {
+				String server = JOptionPane.showInputDialog(null,
+						"Server (host:port)", "localhost:"
+						+ GameServer.DEFAULT_PORT);
+				if (server == null) {
+					return null;
+				}
+				String[] options = {"Host", "Join", "Server AI"};
+				int choice = JOptionPane.showOptionDialog(null,
+						"Host a new game, join one, or play the "
+						+ "server AI?", "Remote Game",
+						JOptionPane.DEFAULT_OPTION,
+						JOptionPane.QUESTION_MESSAGE, null, options,
+						options[0]);
+				if (choice < 0) {
+					return null;
+				}
+				try {
+					int gameId = -1;
+					if (choice == 1) {
+						String id = JOptionPane.showInputDialog(null,
+								"Game number");
+						if (id == null) {
+							return null;
+						}
+						gameId = Integer.parseInt(id.trim());
+					}
+					int colon = server.lastIndexOf(':');
+					String host = colon < 0 ? server
+							: server.substring(0, colon);
+					int port = colon < 0
+							? GameServer.DEFAULT_PORT
+							: Integer.parseInt(server.substring(colon + 1)
+							.trim());
+					return new ConnectFourGUI(host.trim(), port, gameId,
+							choice == 2);
+				} catch (NumberFormatException | IOException ex) {
+					JOptionPane.showMessageDialog(null, "Cannot connect: "
+							+ ex.getMessage(), "Remote Game",
+							JOptionPane.ERROR_MESSAGE);
+					return null;
+				}
+			}
 			
 			private boolean getAIStatus() {
 				return board.isAIEnabled();
@@ -175,6 +256,19 @@ public class ConnectFour {
 		menuPlayer.addActionListener(new MenuActionListener());
 		menuNewGame.add(menuPlayer);
 
+		menuRemote = new JMenuItem("Remote");
+		menuRemote.addActionListener(new MenuActionListener());
+		menuNewGame.add(menuRemote);
+
+		menu.addSeparator();
+		menuUndo = new JMenuItem("Undo");
+		menuUndo.addActionListener(new MenuActionListener());
+		menu.add(menuUndo);
+
+		menuRedo = new JMenuItem("Redo");
+		menuRedo.addActionListener(new MenuActionListener());
+		menu.add(menuRedo);
+
 		menu.addSeparator();
 		menuSwitchColors = new JMenuItem("Switch Colors");
 		menuSwitchColors.addActionListener(new MenuActionListener());
@@ -2,17 +2,28 @@ package connectfour;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 
+import connectfour.server.GameClient;
+import connectfour.server.Protocol;
+
 /**
  * This class is the view of the MVC design, it creates and handles all of the
  * GUI components of a connect four game. It interacts with the logic found in
@@ -36,9 +47,6 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	/** An instance of the ConnectFourGame class. */
 	private ConnectFourGame game;
 
-	/** A CfCell that stores information of one connect four cell. */
-	private CfCell iCell;
-
 	/** A JPanel to add all of the buttons onto. */
 	private JPanel center;
 
@@ -66,6 +74,18 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	private ImageIcon exclamationPoint = new 
 			ImageIcon("src/exclamationPoint.png");
 
+	/** The AI move being searched in the background, or null. */
+	private SwingWorker<Move, Void> aiWorker;
+
+	/** The connection to the server of a remote game, or null. */
+	private GameClient remote;
+
+	/** The player this board plays as in a remote game, once started. */
+	private Player remotePlayer = Player.NONE;
+
+	/** Opening book the AI plays from, if it has been built. */
+	private static final Path OPENING_BOOK = Paths.get("src/openingBook.bin");
+
 	/**
 	 * Constructor that instantiates a new game ConnectFourGame, and sets
 	 * up the JButtons based off of the default board size found in the
@@ -74,14 +94,16 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	 */
 	public ConnectFourGUI() {
 		game = new ConnectFourGame();
-		int row = game.getDEFAULT_ROW();
-		int col = game.getDEFAULT_COL();
+		game.setRecordingChanges(true);
+		int row = game.getRows();
+		int col = game.getCols();
 		board = new JButton[row][col];
 		setLayout(new BorderLayout());
 		center = new JPanel();
 		center.setLayout(new GridLayout(row, col));
 		add(center, BorderLayout.CENTER);
 		createButtons();
+		loadOpeningBook();
 	}
 	
 	/**
@@ -95,25 +117,141 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	 */
 	public ConnectFourGUI(final Player player, boolean enabled) {
 		game = new ConnectFourGame(player, enabled);
-		int row = game.getDEFAULT_ROW();
-		int col = game.getDEFAULT_COL();
+		game.setRecordingChanges(true);
+		int row = game.getRows();
+		int col = game.getCols();
+		board = new JButton[row][col];
+		setLayout(new BorderLayout());
+		center = new JPanel();
+		center.setLayout(new GridLayout(row, col));
+		add(center, BorderLayout.CENTER);
+		createButtons();
+		loadOpeningBook();
+	}
+
+	/**
+	 * Constructor that instantiates a board for a remote game that is
+	 * played on a game server. Moves are sent to the server and only
+	 * shown once the server sends them back, so both players always see
+	 * the same game.
+	 * 
+	 * @param host
+	 *            The host name of the server
+	 * @param port
+	 *            The port of the server
+	 * @param gameId
+	 *            The game to join, or -1 to create a new game
+	 * @param ai
+	 *            Whether or not the server AI is the opponent of a new
+	 *            game
+	 * @throws IOException
+	 *             If the server cannot be reached
+	 */
+	public ConnectFourGUI(final String host, final int port,
+			final int gameId, final boolean ai) throws IOException {
+		game = new ConnectFourGame(Player.PLAYER1, false);
+		game.setRecordingChanges(true);
+		int row = game.getRows();
+		int col = game.getCols();
 		board = new JButton[row][col];
 		setLayout(new BorderLayout());
 		center = new JPanel();
 		center.setLayout(new GridLayout(row, col));
 		add(center, BorderLayout.CENTER);
 		createButtons();
+		remote = new GameClient(host, port, new RemoteListener());
+		try {
+			if (gameId < 0) {
+				remote.newGame(row, col, game.getConnect(), ai, false);
+			} else {
+				remote.join(gameId);
+			}
+		} catch (IOException e) {
+			remote.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * This class passes the messages of the game server to the board on
+	 * the event thread.
+	 */
+	private class RemoteListener implements GameClient.Listener {
+
+		@Override
+		public void waiting(final int gameId) {
+			SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+					null, "Waiting for an opponent.\nGame number: " + gameId,
+					"Remote Game", JOptionPane.INFORMATION_MESSAGE));
+		}
+
+		@Override
+		public void started(final int gameId, final Player player,
+				final int rows, final int cols, final int connect) {
+			SwingUtilities.invokeLater(() -> {
+				if (rows != game.getRows() || cols != game.getCols()
+						|| connect != game.getConnect()) {
+					JOptionPane.showMessageDialog(null, "This board cannot "
+							+ "show game " + gameId + ".", "Remote Game",
+							JOptionPane.ERROR_MESSAGE);
+					endGame();
+				} else {
+					remotePlayer = player;
+				}
+			});
+		}
+
+		@Override
+		public void moved(final Player player, final int row,
+				final int col) {
+			SwingUtilities.invokeLater(() -> {
+				game.selectMove(row, col, player);
+				displayBoard();
+			});
+		}
+
+		@Override
+		public void gameOver(final int result, final Player winner) {
+			SwingUtilities.invokeLater(() -> {
+				remotePlayer = Player.NONE;
+				if (result == Protocol.RESULT_ABANDONED) {
+					JOptionPane.showMessageDialog(null, "Your opponent left "
+							+ "the game.", "Remote Game",
+							JOptionPane.INFORMATION_MESSAGE);
+				} else {
+					showResult();
+				}
+			});
+		}
+
+		@Override
+		public void error(final int code) {
+			if (code == Protocol.ERROR_NO_SUCH_GAME
+					|| code == Protocol.ERROR_GAME_FULL) {
+				SwingUtilities.invokeLater(() -> JOptionPane
+						.showMessageDialog(null, "That game cannot be "
+						+ "joined.", "Remote Game",
+						JOptionPane.ERROR_MESSAGE));
+			}
+		}
+
+		@Override
+		public void disconnected() {
+			SwingUtilities.invokeLater(() -> remotePlayer = Player.NONE);
+		}
 	}
 
 	/**
 	 * Helper method that creates each individual default JButton. This
 	 * JButton includes no border, and the icon on this button is a
 	 * black circle representing that no one is the owner of that cell.
+	 * The action command of every button is its column, so a click can be
+	 * handled without searching for the button that was clicked.
 	 * 
 	 */
 	private void createButtons() {
-		for (int row = 0; row < game.getDEFAULT_ROW(); row++) {
-			for (int col = 0; col < game.getDEFAULT_COL(); col++) {
+		for (int row = 0; row < game.getRows(); row++) {
+			for (int col = 0; col < game.getCols(); col++) {
 				board[row][col] = new JButton("");
 				board[row][col].setPreferredSize(
 						new Dimension(100, 100));
@@ -121,6 +259,7 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 				board[row][col].setBorder(
 						new EmptyBorder(0, 0, 0, 0));
 				board[row][col].setIcon(blackCircle);
+				board[row][col].setActionCommand(Integer.toString(col));
 				board[row][col].addActionListener(this);
 				center.add(board[row][col]);
 			}
@@ -128,6 +267,22 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	}
 	
 	
+	/**
+	 * Helper method that gives the AI the opening book, if one has been
+	 * built with OpeningBookBuilder. The AI searches every move on its own
+	 * when there is no book.
+	 * 
+	 */
+	private void loadOpeningBook() {
+		if (Files.isReadable(OPENING_BOOK)) {
+			try {
+				game.setOpeningBook(OpeningBook.open(OPENING_BOOK));
+			} catch (IOException e) {
+				game.setOpeningBook(null);
+			}
+		}
+	}
+	
 	/**
 	 * Helper method that gets which player made 
 	 * the first move of the game.
@@ -147,25 +302,33 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	}
 	
 	/**
-	 * Helper method that updates the board every time the user clicks on a
-	 * JButton.
+	 * Helper method that updates the board every time a move is made.
+	 * Only the cells that the game reports as changed are redrawn.
 	 * 
 	 */
 	private void displayBoard() {
-		for (int row = 0; row < game.getDEFAULT_ROW(); row++) {
-			for (int col = 0; col < game.getDEFAULT_COL(); col++) {
-				iCell = game.getCell(game.getBoard(), row, col);
-				if (iCell.isMarked() && iCell.getPlayer()
-						== Player.PLAYER1) {
-					board[row][col].setIcon(blueCircle);
-				}
-				if (iCell.isMarked() && iCell.getPlayer()
-						== Player.PLAYER2) {
-					board[row][col].setIcon(redCircle);
-				}
-			}
+		for (Move change : game.takeChanges()) {
+			board[change.getRow()][change.getCol()].setIcon(
+					getIcon(change.getPlayer()));
 		}
 	}
+
+	/**
+	 * Helper method that returns the icon of a cell owned by a player.
+	 * 
+	 * @param player
+	 *            The owner of the cell
+	 * @return ImageIcon The icon the cell is drawn with
+	 */
+	private ImageIcon getIcon(final Player player) {
+		if (player == Player.PLAYER1) {
+			return blueCircle;
+		}
+		if (player == Player.PLAYER2) {
+			return redCircle;
+		}
+		return blackCircle;
+	}
 	
 	@Override
 	/**
@@ -181,33 +344,198 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 	 * 
 	 */
 	public void actionPerformed(final ActionEvent e) {
-		for (int row = 0; row < game.getDEFAULT_ROW(); row++) {
-			for (int col = 0; col < game.getDEFAULT_COL(); col++) {
-				if (e.getSource() == board[row][col]
-						&& game.getGameStatus()
-						== GameStatus.NotOverYet) {
-					game.selectMove(row, col, 
+		if (isAiThinking()) {
+			return;
+		}
+		int col = Integer.parseInt(e.getActionCommand());
+		if (remote != null) {
+			sendMove(col);
+			return;
+		}
+		if (game.getGameStatus() == GameStatus.NotOverYet
+				&& game.canPlay(col)) {
+			game.selectMove(game.getRows() - 1 - game.getHeight(col),
+					col, game.getPlayer());
+		}
+
+		displayBoard();
+
+		if (isAiTurn()) {
+			startAi();
+		} else {
+			showResult();
+		}
+	}
+
+	/**
+	 * Method that takes back the last move. Against the AI its answer is
+	 * taken back as well, so it is the user's turn again. Moves cannot be
+	 * taken back while the AI thinks or in a remote game.
+	 * 
+	 */
+	public void undoMove() {
+		if (isAiThinking() || remote != null) {
+			return;
+		}
+		if (game.undo() != null && isAiTurn()) {
+			game.undo();
+		}
+		displayBoard();
+		if (isAiTurn()) {
+			startAi();
+		}
+	}
+
+	/**
+	 * Method that plays again the last move that was taken back. Against
+	 * the AI its answer is played again as well, or searched for if it was
+	 * never made.
+	 * 
+	 */
+	public void redoMove() {
+		if (isAiThinking() || remote != null) {
+			return;
+		}
+		Move move = game.redo();
+		if (move != null && isAiTurn()) {
+			Move answer = game.redo();
+			if (answer == null) {
+				displayBoard();
+				startAi();
+				return;
+			}
+		}
+		displayBoard();
+		showResult();
+	}
+
+	/**
+	 * Helper method that checks if the AI has to move next.
+	 * 
+	 * @return boolean If it is the AI's turn in a game that is not over
+	 */
+	private boolean isAiTurn() {
+		return game.isAiEnabled() && game.getPlayer() == Player.PLAYER2
+				&& game.getGameStatus() == GameStatus.NotOverYet;
+	}
+
+	/**
+	 * Helper method that sends the move of this board to the server of a
+	 * remote game, if it is this board's turn.
+	 * 
+	 * @param col
+	 *            The column that was clicked
+	 */
+	private void sendMove(final int col) {
+		if (remotePlayer != game.getPlayer()
+				|| game.getGameStatus() != GameStatus.NotOverYet
+				|| !game.canPlay(col)) {
+			return;
+		}
+		try {
+			remote.move(col);
+		} catch (IOException e) {
+			remote.close();
+		}
+	}
+
+	/**
+	 * Helper method that searches for the AI move on a background thread,
+	 * so the board stays responsive while the AI thinks. Clicks are
+	 * ignored until the move has been made.
+	 * 
+	 */
+	private void startAi() {
+		final Position state = game.getCurrentState();
+		final Player player = game.getPlayer();
+		aiWorker = new SwingWorker<Move, Void>() {
+			@Override
+			protected Move doInBackground() {
+				return game.miniMax(state, player);
+			}
+
+			@Override
+			protected void done() {
+				if (isCancelled()) {
+					return;
+				}
+				aiWorker = null;
+				setCursor(Cursor.getDefaultCursor());
+				Move move = getMove(this);
+				if (move != null) {
+					game.selectMove(move.getRow(), move.getCol(),
 							game.getPlayer());
-					
-					if (game.isAiEnabled() && game.getPlayer() == Player.PLAYER2) {
-						if (game.getAiRandomMove()) {
-							Move move = game.generateRandomMove(game.getBoard(), game.getPlayer());
-							if (move != null) {
-								game.selectMove(move.getRow(), move.getCol(), game.getPlayer());
-							}
-						} else {
-							Move move = game.miniMax(game.getCurrentState(game.getBoard()), game.getPlayer());
-							if (move != null) {
-								game.selectMove(move.getRow(), move.getCol(), game.getPlayer());
-							}
-						}
-					}
 				}
+				displayBoard();
+				showResult();
 			}
+		};
+		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		aiWorker.execute();
+	}
+
+	/**
+	 * Helper method that returns the move an AI search found.
+	 * 
+	 * @param worker
+	 *            The background search that is done
+	 * @return Move The move, or null if there was none
+	 */
+	private static Move getMove(final SwingWorker<Move, Void> worker) {
+		try {
+			return worker.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("AI search failed",
+					e.getCause());
 		}
+	}
 
-		displayBoard();
+	/**
+	 * Method that checks if the AI is searching for a move.
+	 * 
+	 * @return boolean If the AI is thinking
+	 */
+	public boolean isAiThinking() {
+		return aiWorker != null;
+	}
 
+	/**
+	 * Method that cancels the AI move that is being searched, if any. The
+	 * search is stopped and its move is never played, so this is called
+	 * before the board is thrown away for a new game.
+	 * 
+	 */
+	public void cancelAi() {
+		if (aiWorker != null) {
+			game.stopSearch();
+			aiWorker.cancel(false);
+			aiWorker = null;
+			setCursor(Cursor.getDefaultCursor());
+		}
+	}
+
+	/**
+	 * Method that ends the game on this board before the board is thrown
+	 * away. The AI is cancelled and a remote game is left.
+	 * 
+	 */
+	public void endGame() {
+		cancelAi();
+		if (remote != null) {
+			remote.close();
+			remotePlayer = Player.NONE;
+		}
+	}
+
+	/**
+	 * Helper method that tells the players who won the game, or that it
+	 * was a tie, once the game is over.
+	 * 
+	 */
+	private void showResult() {
 		if (game.getGameStatus() == GameStatus.Won && game.getPlayer()
 				== Player.PLAYER1) {
 			JOptionPane.showMessageDialog(null, "Red Wins!", "Red",
@@ -220,8 +548,7 @@ public class ConnectFourGUI extends JPanel implements ActionListener {
 					"Blue", JOptionPane.INFORMATION_MESSAGE,
 					blueCircleMini);
 		}
-		if (game.getGameStatus() == GameStatus.NotOverYet
-				&& game.checkTie(game.getBoard())) {
+		if (game.getGameStatus() == GameStatus.Tie) {
 			JOptionPane.showMessageDialog(null, "It's a tie!",
 					"Tie", JOptionPane.INFORMATION_MESSAGE,
 					exclamationPoint);
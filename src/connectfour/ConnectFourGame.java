@@ -1,7 +1,9 @@
 package connectfour;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * This class is the controller of the MVC design, it creates a fully functional
@@ -13,33 +15,90 @@ import java.util.Collections;
  */
 public class ConnectFourGame {
 
-	/** A 2D array full of connect four cells. */
+	/** A 2D array full of connect four cells that mirrors the position. */
 	private CfCell[][] board;
+
+	/** The board that all of the moves and win checks run on. */
+	private Board position;
+
+	/** Number of rows on the board. */
+	private final int rows;
+
+	/** Number of columns on the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
 	
 	/** Current status of the game. */
 	private GameStatus gameStatus;
 
+	/** The columns that have been played, in the order they were played. */
+	private int[] history;
+
+	/** How many moves of the history have been played. */
+	private int historySize;
+
+	/** How many moves of the history can be played again by redo. */
+	private int historyEnd;
+
+	/** Cells that changed since the view last asked for the changes. */
+	private List<Move> changes = new ArrayList<Move>();
+
+	/** Whether or not changed cells are kept for a view. */
+	private boolean recordingChanges;
+
 	/** Used to keep track of the current turn of the game. */
 	private Player player;
 	
 	/** Used to keep track of who starts first. */
 	private Player startingPlayer;
 	
-	private boolean firstMove;
-	
+	/** Whether or not the second player is controlled by the AI. */
 	private boolean aiEnabled;
-	
-	private int aiRandomMove;
+
+	/** The game tree search that the AI uses to pick its moves. */
+	private Negamax search;
+
+	/** How many megabytes the AI transposition table may use. */
+	private int tableSize;
+
+	/** The search that runs the AI on several threads, or null. */
+	private ParallelSearch parallelSearch;
+
+	/** How many threads the AI searches with. */
+	private int searchThreads = 1;
+
+	/** Solved early game positions the AI plays from, or null. */
+	private OpeningBook openingBook;
+
+	/** The exact solver, created the first time a position is solved. */
+	private Solver solver;
+
+	/** Told what every move costs, or null to measure nothing. */
+	private EngineListener engineListener;
+
+	/** When the game was created, in nanoseconds. */
+	private final long startedAt = System.nanoTime();
 
 	// CHECKSTYLE:OFF
 	/** Default row of a connect four board. */
-	private final int DEFAULT_ROW = 6;
+	private static final int DEFAULT_ROW = 6;
 
 	/** Default column of a connect four board. */
-	private final int DEFAULT_COL = 7;
+	private static final int DEFAULT_COL = 7;
 
 	/** Winning condition is to get 4 in a row. */
-	private final int CONNECT_FOUR = 4;
+	private static final int CONNECT_FOUR = 4;
+
+	/** How many plies the AI looks ahead by default. */
+	static final int DEFAULT_SEARCH_DEPTH = 6;
+
+	/** How many milliseconds the AI may think by default. */
+	static final long DEFAULT_SEARCH_TIME = 1000;
+
+	/** How many megabytes the AI transposition table uses by default. */
+	private static final int DEFAULT_TABLE_SIZE = 4;
 	// CHECKSTYLE:ON
 	
 	/**
@@ -48,14 +107,7 @@ public class ConnectFourGame {
 	 * 
 	 */
 	public ConnectFourGame() {
-		setGameStatus(GameStatus.NotOverYet);
-		setPlayer(Player.PLAYER1);
-		setStartingPlayer(Player.PLAYER1);
-		setAiEnabled(true);
-		board = new CfCell[DEFAULT_ROW][DEFAULT_COL];
-		initialize();
-		setAiRandomMove(0);
-		setFirstMove(true);
+		this(Player.PLAYER1, true);
 	}
 	
 	/**
@@ -67,14 +119,54 @@ public class ConnectFourGame {
 	 * @param player The color that the first player is going to be
 	 */
 	public ConnectFourGame(final Player player, boolean enabled) {
+		this(DEFAULT_ROW, DEFAULT_COL, CONNECT_FOUR, player, enabled);
+	}
+
+	/**
+	 * Constructor that instantiates a new game on a board of any size,
+	 * where any number of pieces in a row win. Boards that fit in a
+	 * single long are played on a Bitboard, and larger boards such as
+	 * 20x20 connect five are played on a GridBoard.
+	 * 
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param player
+	 *            The color that the first player is going to be
+	 * @param enabled
+	 *            Whether or not the second player is controlled by the AI
+	 */
+	public ConnectFourGame(final int rows, final int cols, final int connect,
+			final Player player, boolean enabled) {
+		if (connect > Math.max(rows, cols)) {
+			throw new IllegalArgumentException(connect + " in a row cannot "
+					+ "fit on a " + rows + "x" + cols + " board");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
 		setGameStatus(GameStatus.NotOverYet);
 		setPlayer(player);
 		setStartingPlayer(player);
 		setAiEnabled(enabled);
-		board = new CfCell[DEFAULT_ROW][DEFAULT_COL];
+		position = Board.create(rows, cols, connect);
+		board = new CfCell[rows][cols];
+		history = new int[rows * cols];
+		Object event = FlightEvents.begin(FlightEvents.GAME_START);
+		if (event != null) {
+			FlightEvents.commit(event, position.getHash(),
+					position.getMoves(), rows + "x" + cols + " connect "
+					+ connect);
+		}
+		search = new Negamax(DEFAULT_SEARCH_DEPTH, DEFAULT_SEARCH_TIME);
+		search.setEvaluator(new ThreatEvaluator());
+		search.setKillerMoves(true);
+		search.setHistoryHeuristic(true);
+		tableSize = DEFAULT_TABLE_SIZE;
 		initialize();
-		setAiRandomMove(0);
-		setFirstMove(true);
 	}
 
 	/**
@@ -83,8 +175,8 @@ public class ConnectFourGame {
 	 * 
 	 */
 	private void initialize() {
-		for (int row = 0; row < getDEFAULT_ROW(); row++) {
-			for (int col = 0; col < getDEFAULT_COL(); col++) {
+		for (int row = 0; row < getRows(); row++) {
+			for (int col = 0; col < getCols(); col++) {
 				board[row][col] = new CfCell();
 			}
 		}
@@ -106,285 +198,259 @@ public class ConnectFourGame {
 	 * @return int Whether or not the move that is being made is valid or
 	 * 			   not
 	 */
-	public int selectMove(int row, final int col, final Player player) {
-		if (getCell(getBoard(), row, col) == null || getCell(getBoard(), row, col).isMarked()) {
+	public int selectMove(final int row, final int col, final Player player) {
+		if (!isOwner(position, row, col, Player.NONE)) {
 			return -1;
 		}
-		while (getCell(getBoard(), row, col) != null && !getCell(getBoard(), row, col).
-				isMarked()) {
-			row++;
+		long start = engineListener == null ? 0 : System.nanoTime();
+		Object event = FlightEvents.begin(FlightEvents.SELECT_MOVE);
+		int dropRow = makeMove(position, col, player);
+		board[dropRow][col].setMarked(true);
+		board[dropRow][col].setPlayer(player);
+		history[historySize++] = col;
+		historyEnd = historySize;
+		if (recordingChanges) {
+			changes.add(new Move(dropRow, col, player));
 		}
-		board[row - 1][col].setMarked(true);
-		board[row - 1][col].setPlayer(player);
-		if (checkStatus(board, row - 1, col, player)) {
+		if (checkStatus(position, dropRow, col, player)) {
 			setGameStatus(GameStatus.Won);
+		} else if (position.isFull()) {
+			setGameStatus(GameStatus.Tie);
 		} else {
 			setGameStatus(GameStatus.NotOverYet);
 		}
 		setPlayer(player.next());
-		return 1;
-	}
-
-	private void makeMove(CfCell[][] board, final int row, final int col, Player player) {
-		if (board[row][col] == null) {
-			throw new NullPointerException();
+		if (engineListener != null) {
+			engineListener.moveSelected(System.nanoTime() - start);
 		}
-		board[row][col].setMarked(true);
-		board[row][col].setPlayer(player);
-	}
-	
-	private void undoMove(CfCell[][] board, final int row, final int col) {
-		if (board[row][col] == null) {
-			throw new NullPointerException();
+		if (event != null) {
+			FlightEvents.commit(event, position.getHash(),
+					position.getMoves(), col);
 		}
-		board[row][col].setMarked(false);
-		board[row][col].setPlayer(Player.NONE);
-	}
-	
-	public Move miniMax(CfCell[][] board, Player player) {
-		ArrayList<Move> availableMoves = availableMoves(board, player);
-		ArrayList<Move> bestMoves = new ArrayList<Move>();
-		Move bestMove = null;
-		
-		if (availableMoves == null || availableMoves.size() == 0) {
-			return bestMove;
-		}
-		
-		if (player == Player.PLAYER1) {
-			bestMove = min(availableMoves);
-			if (bestMove.getRating() == -10) {
-				bestMoves.add(bestMove);
-			}
-		} 
-		
-		if (player == Player.PLAYER2) {
-			bestMove = max(availableMoves);
-			if (bestMove.getRating() == 10) {
-				bestMoves.add(bestMove);
+		if (getGameStatus() != GameStatus.NotOverYet) {
+			Object end = FlightEvents.begin(FlightEvents.GAME_END);
+			if (end != null) {
+				FlightEvents.commit(end, position.getHash(),
+						position.getMoves(), getGameStatus().toString(),
+						System.nanoTime() - startedAt);
 			}
 		}
-	
-		makeMove(board, bestMove.getRow(), bestMove.getCol(), player);
-		
-		if (bestMove.getRating() == 0 && checkTie(board)) {
-			bestMoves.add(bestMove);
-		}
-		
-		if (bestMove.getRating() == 0 && !checkTie(board)) {
-//			bestMoves.add(miniMax(board, player.next()));
-			bestMoves.add(miniMax(board, player.next()));
-		}
-//		undoMove(board, bestMove.getRow(), bestMove.getCol());
-		return max(bestMoves);
-	}
-	
-	public Move max(ArrayList<Move> availableMoves) {
-		Move maxMove = availableMoves.get(0);
-		int rating = availableMoves.get(0).getRating();
-		for (Move move : availableMoves) {
-			if (move.getRating() >= rating) {
-				rating = move.getRating();
-				maxMove = move;
-			}
-		}
-		return maxMove;
-	}
-	
-	public Move min(ArrayList<Move> availableMoves) {
-		Move minMove = availableMoves.get(0);
-		int rating = availableMoves.get(0).getRating();
-		for (Move move : availableMoves) {
-			if (move.getRating() <= rating) {
-				rating = move.getRating();
-				minMove = move;
-			}
-		}
-		return minMove;
+		return 1;
 	}
-	
-	public Move generateRandomMove(CfCell board[][], Player player) {
-		if (getCell(board, (getDEFAULT_ROW() - 1), (getDEFAULT_COL() / 2)) != null && !board[getDEFAULT_ROW() - 1][getDEFAULT_COL() / 2].isMarked()) {
-			Move centerMove = new Move (getDEFAULT_ROW() - 1, (getDEFAULT_COL() / 2), player);
-			setAiRandomMove(1);
-			return centerMove;
-		}
-		
-		ArrayList<Move> availableMoves = new ArrayList<Move>();
-		if (firstMove) {
-			availableMoves = generateBlock(board, player);
-			setFirstMove(false);
-		} else {
-			availableMoves = availableMoves(board, player); 
-			availableMoves.remove(availableMoves.size() - 1);
-			availableMoves.remove(0);
-		}
-		
-		if (availableMoves.size() == 0) {
+
+	/**
+	 * Method that takes back the last move of the game. The cell is
+	 * emptied, the turn goes back to the player who made the move and
+	 * the game is no longer over.
+	 * 
+	 * @return Move The move that was taken back, or null if no moves
+	 *         have been made
+	 */
+	public Move undo() {
+		if (historySize == 0) {
 			return null;
 		}
-		
-		setAiRandomMove(1);
-		return randomMove(availableMoves);
-	}
-	
-	private Move randomMove(ArrayList<Move> moves) {
-		Collections.shuffle(moves);
-		return moves.get(0);
-	}
-	
-	private ArrayList<Move> generateBlock(CfCell board[][], Player player) {
-		ArrayList<Move> blockMoves = new ArrayList<Move>();
-		if (!checkTie(board) && getGameStatus() != GameStatus.Won) {
-			for (int row = getDEFAULT_ROW() - 1; row >= getDEFAULT_ROW() - 1; row--) {
-				for (int col = 0; col < getDEFAULT_COL(); col++) {
-					if (board[row][col].isMarked() && board[row][col].getPlayer() == player.next()) {
-						if (getCell(board, row, col - 1) != null && !board[row][col - 1].isMarked()) {
-							Move left = new Move(row, col - 1, player);
-							blockMoves.add(left);
-						}
-						if (getCell(board, row, col + 1) != null && !board[row][col + 1].isMarked()) {
-							Move right = new Move(row, col + 1, player);
-							blockMoves.add(right);
-						}
-						if (getCell(board, row - 1, col) != null && !board[row - 1][col].isMarked()) {
-							Move up = new Move(row - 1, col, player);
-							blockMoves.add(up);
-						}
-					}
-				}
-			}
+		int col = history[--historySize];
+		int row = getRows() - position.getHeight(col);
+		Player owner = board[row][col].getPlayer();
+		undoMove(position, col);
+		board[row][col].setMarked(false);
+		board[row][col].setPlayer(Player.NONE);
+		if (recordingChanges) {
+			changes.add(new Move(row, col, Player.NONE));
 		}
-		return blockMoves;
+		setGameStatus(GameStatus.NotOverYet);
+		setPlayer(owner);
+		return new Move(row, col, owner);
 	}
-	
-	private ArrayList<Move> availableMoves(CfCell[][] board, Player player) {
-		ArrayList<Move> moves = new ArrayList<Move>();
-		if (!checkTie(board) && getGameStatus() != GameStatus.Won) {
-			for (int col = 0; col < getDEFAULT_COL(); col++) {
-				for (int row = getDEFAULT_ROW() - 1; row >= 0; row--) {
-					if (!board[row][col].isMarked() && board[row][col].getPlayer() == Player.NONE) {
-						Move newMove = new Move(row, col, player);
-						moves.add(newMove);
-						row = -1;
-						rateMove(board, newMove, player);
-					}
-				}
-			}
+
+	/**
+	 * Method that plays again the last move that was taken back. Any other
+	 * move made after an undo throws away the moves that could be redone.
+	 * 
+	 * @return Move The move that was played again, or null if there is
+	 *         no move to redo
+	 */
+	public Move redo() {
+		if (historySize == historyEnd) {
+			return null;
 		}
-		return moves;
+		int end = historyEnd;
+		int col = history[historySize];
+		Player mover = getPlayer();
+		int row = getRows() - 1 - position.getHeight(col);
+		selectMove(row, col, mover);
+		historyEnd = end;
+		return new Move(row, col, mover);
 	}
-	
-	private void rateMove(CfCell[][] currentState, Move move, Player player) {
-		int score = 0;
-		makeMove(currentState, move.getRow(), move.getCol(), player);
-		if (checkStatus(currentState, move.getRow(), move.getCol(), player)) {
-			if (player == Player.PLAYER1) {
-				score = -10;
-			} else {
-				score = 10;
-			}
-		}
-		undoMove(currentState, move.getRow(), move.getCol());
-		move.setRating(score);
+
+	/**
+	 * Method that checks if a move can be taken back.
+	 * 
+	 * @return boolean If a move has been made
+	 */
+	public boolean canUndo() {
+		return historySize > 0;
 	}
-	
+
 	/**
-	 * Helper method that checks the game board every time a new cell is
-	 * added. This method checks for all of the win conditions including
-	 * horizontal, vertical and both directions of diagonals.
+	 * Method that checks if a move that was taken back can be played
+	 * again.
 	 * 
-	 * @param row
-	 *            The row of the cell that was selected
-	 * @param col
-	 *            The column of the cell that was selected
-	 * @param player
-	 *            Who the current player is
-	 * @return boolean Checks to see if there is a winner or not
+	 * @return boolean If there is a move to redo
 	 */
-	private boolean checkStatus(CfCell[][] board, final int row, final int col, final 
-			Player player) {
-		return (checkHorizontal(board, row, player)
-				|| checkVertical(board, col, player)
-				|| checkDiagonal(board, row, col, player));
+	public boolean canRedo() {
+		return historySize < historyEnd;
 	}
 
 	/**
-	 * Helper method that checks how many consecutive cells of a single
-	 * player there are horizontally. The winning condition is met if
-	 * there is enough consecutive cells to equal getCONNECT_FOUR().
+	 * Helper method that drops a piece into a column of a board. The
+	 * board keeps its Zobrist hash up to date as the piece is added.
 	 * 
-	 * @param row
-	 *            The row of the cell that was selected
+	 * @param board
+	 *            The board the piece is dropped on
+	 * @param col
+	 *            The column the piece is dropped in
 	 * @param player
 	 *            Who the current player is
-	 * @return boolean Checks to see if there is a winner or not
+	 * @return int The row the piece landed in
 	 */
-	private boolean checkHorizontal(CfCell[][] board, final int row, final Player player) {
-		int count = 0;
-		for (int col = 0; col < getDEFAULT_COL(); col++) {
-			if (board[row][col].getPlayer() == player) {
-				count++;
-			} else {
-				count = 0;
-			}
-			if (count == getCONNECT_FOUR()) {
-				return true;
-			}
+	private int makeMove(Board board, final int col, Player player) {
+		if (!board.canPlay(col)) {
+			throw new IllegalStateException("Column " + col + " is full");
 		}
-		return false;
+		return board.play(col, player);
 	}
-
+	
 	/**
-	 * Helper method that checks how many consecutive cells of a single
-	 * player there are vertically. The winning condition is met if
-	 * there is enough consecutive cells to equal getCONNECT_FOUR().
+	 * Helper method that removes the top piece of a column of a board.
+	 * The board keeps its Zobrist hash up to date as the piece is removed.
 	 * 
+	 * @param board
+	 *            The board the piece is removed from
 	 * @param col
-	 *            The column of the cell that was selected
+	 *            The column the piece is removed from
+	 */
+	private void undoMove(Board board, final int col) {
+		if (board.getHeight(col) == 0) {
+			throw new IllegalStateException("Column " + col + " is empty");
+		}
+		board.undo(col);
+	}
+	
+	/**
+	 * Method that asks the AI for the best move of a player. This runs a
+	 * negamax search with alpha-beta pruning on the position, limited by
+	 * the search depth and time of the game. The transposition table is
+	 * only created the first time the AI is asked for a move, so games
+	 * between two players never allocate one. Positions that are in the
+	 * opening book are answered from the book without searching.
+	 * 
+	 * @param state
+	 *            The position the AI is going to search
 	 * @param player
-	 *            Who the current player is
-	 * @return boolean Checks to see if there is a winner or not
+	 *            Whose turn it is
+	 * @return Move The best move, rated from the point of view of the
+	 *         player, or null if the game is already over
 	 */
-	private boolean checkVertical(CfCell[][] board, final int col, final Player player) {
-		int count = 0;
-		for (int row = 0; row < getDEFAULT_ROW(); row++) {
-			if (board[row][col].getPlayer() == player) {
-				count++;
-			} else {
-				count = 0;
+	public Move miniMax(Position state, Player player) {
+		Board board = state.toBoard();
+		if (getGameStatus() != GameStatus.NotOverYet || board.isFull()) {
+			return null;
+		}
+		long start = engineListener == null ? 0 : System.nanoTime();
+		Object event = FlightEvents.begin(FlightEvents.AI_MOVE);
+		if (openingBook != null) {
+			int entry = openingBook.probe(board, player);
+			if (entry >= 0) {
+				int col = OpeningBook.getColumn(entry);
+				Move move = new Move(getRows() - 1 - board.getHeight(col),
+						col, player);
+				int result = OpeningBook.getResult(entry) - OpeningBook.DRAW;
+				move.setRating(result * (Negamax.WIN_SCORE
+						- getRows() * getCols()));
+				if (engineListener != null) {
+					engineListener.aiMoved(System.nanoTime() - start, 0, 0,
+							0, 0, 0, 0);
+				}
+				if (event != null) {
+					FlightEvents.commit(event, board.getHash(), 0, col, 0L);
+				}
+				return move;
+			}
+		}
+		if (search.getTranspositionTable() == null) {
+			search.setTranspositionTable(new TranspositionTable(tableSize));
+		}
+		Move move;
+		int depth;
+		long nodes;
+		if (searchThreads > 1) {
+			if (parallelSearch == null) {
+				parallelSearch = new ParallelSearch(search, searchThreads);
 			}
-			if (count == getCONNECT_FOUR()) {
-				return true;
+			move = parallelSearch.search(board, player);
+			depth = parallelSearch.getCompletedDepth();
+			nodes = parallelSearch.getNodes();
+			if (engineListener != null) {
+				engineListener.aiMoved(System.nanoTime() - start, nodes,
+						depth, parallelSearch.getTableHits(),
+						parallelSearch.getTableMisses(),
+						parallelSearch.getCutoffs(),
+						parallelSearch.getFirstMoveCutoffs());
 			}
+		} else {
+			move = search.search(board, player);
+			depth = search.getCompletedDepth();
+			nodes = search.getNodes();
+			if (engineListener != null) {
+				engineListener.aiMoved(System.nanoTime() - start, nodes,
+						depth, search.getTableHits(), search.getTableMisses(),
+						search.getCutoffs(), search.getFirstMoveCutoffs());
+			}
+		}
+		if (event != null) {
+			FlightEvents.commit(event, board.getHash(), depth,
+					move == null ? -1 : move.getCol(), nodes);
 		}
-		return false;
+		return move;
 	}
-
+	
 	/**
-	 * Helper method that checks the diagonals of a connect four game board.
-	 * This method could probably be optimized a little because it contains
-	 * four separate loops to find both the forward and backward diagonals
-	 * of a game board.
+	 * Method that stops an AI search that is running on another thread,
+	 * so that miniMax returns the best move it has found so far right
+	 * away. The AI of the game stays stopped afterwards, so this is meant
+	 * for a game that is being thrown away.
 	 * 
-	 * @param row
-	 *            The row of the cell that was selected
-	 * @param col
-	 *            The column of the cell that was selected
-	 * @param player
-	 *            Who the current player is
-	 * @return boolean Checks to see if there is a winner or not
-	 */	
-	private boolean checkDiagonal(CfCell[][] board, final int row, final int col,
-			final Player player) {
-		return (checkForwardDiagonal(board, row, col, player)
-				|| checkBackwardDiagonal(board, row, col, player));
+	 */
+	public void stopSearch() {
+		search.setStopped(true);
 	}
 
 	/**
-	 * Helper method that contains the logic to find how many consecutive
-	 * cells of a single player there are diagonally forward. The winning
-	 * condition is met if there is enough consecutive cells to equal 
-	 * getCONNECT_FOUR().
+	 * Method that proves the value of the current position by searching
+	 * it to the end of the game. Unlike the AI this is never cut short,
+	 * so it can take minutes early in the game. The solver and its table
+	 * are only created the first time a position is solved.
+	 * 
+	 * @return Solver.Solution Whether the player to move wins, draws or
+	 *         loses, in how many plies and with which column
+	 */
+	public Solver.Solution solve() {
+		if (solver == null) {
+			solver = new Solver(getRows(), getCols(),
+					Solver.getDefaultTableSize());
+		}
+		return solver.solve(position, player);
+	}
+	
+	/**
+	 * Helper method that checks the game board every time a new cell is
+	 * added. This method checks for all of the win conditions including
+	 * horizontal, vertical and both directions of diagonals, either by
+	 * shifting the bitboard of the player or by looking up the win index
+	 * of a large board, so it takes the same amount of time no matter
+	 * where the cell is or how large the board is.
 	 * 
 	 * @param row
 	 *            The row of the cell that was selected
@@ -393,79 +459,29 @@ public class ConnectFourGame {
 	 * @param player
 	 *            Who the current player is
 	 * @return boolean Checks to see if there is a winner or not
-	 */	
-	private boolean checkForwardDiagonal(CfCell[][] board, final int row, final int col,
-			final Player player) {
-		int forwardCount = 0;
-		int rUpValue = row;
-		int cUpValue = col;
-		int rDownValue = row + 1;
-		int cDownValue = col - 1;
-		while (getCell(board, rUpValue, cUpValue) != null
-				&& getCell(board, rUpValue, cUpValue).getPlayer() 
-				== player) {
-			forwardCount++;
-			rUpValue--;
-			cUpValue++;
-			if (forwardCount == getCONNECT_FOUR()) {
-				return true;
-			}
-		}
-		while (getCell(board, rDownValue, cDownValue) != null
-				&& getCell(board, rDownValue, cDownValue).getPlayer() 
-				== player) {
-			forwardCount++;
-			rDownValue++;
-			cDownValue--;
-			if (forwardCount == getCONNECT_FOUR()) {
-				return true;
-			}
-		}
-		return false;
+	 */
+	private boolean checkStatus(Board board, final int row, final int col, final 
+			Player player) {
+		return board.hasWon(player);
 	}
 
 	/**
-	 * Helper method that contains the logic to find how many consecutive
-	 * cells of a single player there are diagonally backward. The
-	 * winning condition is met if there is enough consecutive cells to
-	 * equal getCONNECT_FOUR().
+	 * Helper method that checks if a cell is on the board and is owned by
+	 * a player.
 	 * 
 	 * @param row
-	 *            The row of the cell that was selected
+	 *            The row of the cell
 	 * @param col
-	 *            The column of the cell that was selected
+	 *            The column of the cell
 	 * @param player
 	 *            Who the current player is
-	 * @return boolean Checks to see if there is a winner or not
+	 * @return boolean If the player owns the cell
 	 */
-	private boolean checkBackwardDiagonal(CfCell[][] board, final int row, final int col,
+	private boolean isOwner(Board board, final int row, final int col,
 			final Player player) {
-		int backwardCount = 0;
-		int rUpValue = row;
-		int cUpValue = col;
-		int rDownValue = row + 1;
-		int cDownValue = col + 1;
-		while (getCell(board, rUpValue, cUpValue) != null
-				&& getCell(board, rUpValue, cUpValue).getPlayer() 
-				== player) {
-			backwardCount++;
-			rUpValue--;
-			cUpValue--;
-			if (backwardCount == getCONNECT_FOUR()) {
-				return true;
-			}
-		}
-		while (getCell(board, rDownValue, cDownValue) != null
-				&& getCell(board, rDownValue, cDownValue).getPlayer()
-				== player) {
-			backwardCount++;
-			rDownValue++;
-			cDownValue++;
-			if (backwardCount == getCONNECT_FOUR()) {
-				return true;
-			}
-		}
-		return false;
+		return row >= 0 && col >= 0 && row < getRows()
+				&& col < getCols()
+				&& board.getOwner(row, col) == player;
 	}
 
 	/**
@@ -477,7 +493,7 @@ public class ConnectFourGame {
 	 */
 	public boolean checkTie(final CfCell[][] board) {
 		int row = 0;
-		for (int col = 0; col < getDEFAULT_COL(); col++) {
+		for (int col = 0; col < getCols(); col++) {
 			if (getCell(board, row, col) != null && !board[row][col].isMarked()) {
 				return false;
 			}
@@ -496,32 +512,106 @@ public class ConnectFourGame {
 	 * 		   the bounds of the game board.
 	 */
 	public CfCell getCell(CfCell board[][], final int row, final int col) {
-		return (row < 0 || col < 0 || row >= getDEFAULT_ROW()
-				|| col >= getDEFAULT_COL())
+		return (row < 0 || col < 0 || row >= getRows()
+				|| col >= getCols())
 				? null : board[row][col];
 	}
 	
+	/**
+	 * Getter method that returns a view of the game board as connect four
+	 * cells. The cells are kept in sync with the bitboard every time a
+	 * move is selected, and are only meant for displaying the board.
+	 * 
+	 * @return CfCell[][] The cells of the game board
+	 */
 	public CfCell[][] getBoard() {
 		return board;
 	}
-		
-	public CfCell[][] getCurrentState(CfCell[][] currentState) {
-		CfCell[][] newState = new CfCell[DEFAULT_ROW][DEFAULT_COL];
-		for (int row = 0; row < getDEFAULT_ROW(); row++) {
-			for (int col = 0; col < getDEFAULT_COL(); col++) {
-				if (getCell(getBoard(), row, col) != null) {
-					CfCell temp = getCell(currentState, row, col);
-					if (temp.isMarked()) {
-						newState[row][col] = new CfCell();
-						newState[row][col].setPlayer(temp.getPlayer());
-						newState[row][col].setMarked(true);
-					} else {
-						newState[row][col] = new CfCell();
-					}
-				}
-			}
+
+	/**
+	 * Setter method that sets whether or not the cells that change are
+	 * kept for takeChanges. Only a view that calls takeChanges should turn
+	 * this on, since nothing else would ever empty the list.
+	 * 
+	 * @param recordingChanges
+	 *            If changed cells are kept
+	 */
+	public void setRecordingChanges(final boolean recordingChanges) {
+		this.recordingChanges = recordingChanges;
+		if (!recordingChanges) {
+			changes.clear();
+		}
+	}
+
+	/**
+	 * Method that returns every cell that changed since the last time this
+	 * was called, in the order they changed, so a view only has to redraw
+	 * those cells instead of the whole board. Cells are only kept while
+	 * recording changes is turned on.
+	 * 
+	 * @return List The changed cells, each as a move holding the row, the
+	 *         column and the player who now owns the cell, or NONE if it
+	 *         was emptied
+	 */
+	public List<Move> takeChanges() {
+		if (changes.isEmpty()) {
+			return Collections.emptyList();
 		}
-		return newState;
+		List<Move> taken = changes;
+		changes = new ArrayList<Move>();
+		return taken;
+	}
+
+	/**
+	 * Getter method that returns an immutable snapshot of the current
+	 * position. Taking a snapshot does not copy the board, and the
+	 * snapshot can safely be handed to another thread.
+	 * 
+	 * @return Position A snapshot of the current position
+	 */
+	public Position getCurrentState() {
+		return position.snapshot();
+	}
+
+	/**
+	 * Getter method that returns how many moves have been made.
+	 * 
+	 * @return int The number of moves on the board
+	 */
+	public int getMoveCount() {
+		return historySize;
+	}
+
+	/**
+	 * Getter method that returns the column of every move made so far, in
+	 * the order the moves were made.
+	 * 
+	 * @return int[] A copy of the columns played
+	 */
+	public int[] getHistory() {
+		return Arrays.copyOf(history, historySize);
+	}
+
+	/**
+	 * Method that checks if a piece can still be dropped in a column.
+	 * 
+	 * @param col
+	 *            The column
+	 * @return boolean If the column is on the board and not full
+	 */
+	public boolean canPlay(final int col) {
+		return col >= 0 && col < getCols() && position.canPlay(col);
+	}
+
+	/**
+	 * Getter method that returns how many pieces are in a column.
+	 * 
+	 * @param col
+	 *            The column
+	 * @return int The number of pieces in the column
+	 */
+	public int getHeight(final int col) {
+		return position.getHeight(col);
 	}
 
 	/**
@@ -583,14 +673,6 @@ public class ConnectFourGame {
 		this.startingPlayer = startingPlayer;
 	}
 	
-	public boolean isFirstMove() {
-		return firstMove;
-	}
-
-	public void setFirstMove(boolean firstMove) {
-		this.firstMove = firstMove;
-	}
-	
 	public boolean isAiEnabled() {
 		return aiEnabled;
 	}
@@ -599,12 +681,210 @@ public class ConnectFourGame {
 		this.aiEnabled = aiEnabled;
 	}
 	
-	public boolean getAiRandomMove() {
-		return (aiRandomMove < 2);
+	/**
+	 * Getter method that returns the transposition table of the AI.
+	 * 
+	 * @return TranspositionTable The table, or null if the AI has not
+	 *         made a move yet
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return search.getTranspositionTable();
+	}
+
+	/**
+	 * Setter method that sets the transposition table of the AI. Many
+	 * games can share one table, since every position is stored under
+	 * its own hash, which saves a table per game when a process runs a
+	 * lot of games at once.
+	 * 
+	 * @param table
+	 *            The table, or null to create a table of the table size
+	 *            the next time the AI is asked for a move
+	 */
+	public void setTranspositionTable(final TranspositionTable table) {
+		search.setTranspositionTable(table);
+	}
+
+	/**
+	 * Getter method that returns how many megabytes the AI transposition
+	 * table may use.
+	 * 
+	 * @return int The size of the table in megabytes
+	 */
+	public int getTableSize() {
+		return tableSize;
 	}
 
-	private void setAiRandomMove(int aiRandomMove) {
-		this.aiRandomMove += aiRandomMove;
+	/**
+	 * Setter method that sets how many megabytes the AI transposition
+	 * table may use. Any table that already exists is thrown away.
+	 * 
+	 * @param tableSize
+	 *            The size of the table in megabytes
+	 */
+	public void setTableSize(final int tableSize) {
+		if (tableSize < 1) {
+			throw new IllegalArgumentException("Table size must be at least "
+					+ "1 megabyte");
+		}
+		this.tableSize = tableSize;
+		search.setTranspositionTable(null);
+	}
+
+	/**
+	 * Getter method that returns the listener that is told what every
+	 * move costs.
+	 * 
+	 * @return EngineListener The listener, or null if nothing is measured
+	 */
+	public EngineListener getEngineListener() {
+		return engineListener;
+	}
+
+	/**
+	 * Setter method that sets the listener that is told how long every
+	 * move takes and what every AI search cost. One listener such as
+	 * EngineMetrics can be shared by every game of a process.
+	 * 
+	 * @param engineListener
+	 *            The listener, or null to measure nothing
+	 */
+	public void setEngineListener(final EngineListener engineListener) {
+		this.engineListener = engineListener;
+	}
+
+	/**
+	 * Getter method that returns the opening book of the AI.
+	 * 
+	 * @return OpeningBook The opening book, or null if there is none
+	 */
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	/**
+	 * Setter method that sets the opening book the AI consults before it
+	 * searches.
+	 * 
+	 * @param openingBook
+	 *            The opening book, or null to always search
+	 */
+	public void setOpeningBook(final OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	/**
+	 * Getter method that returns how many threads the AI searches with.
+	 * 
+	 * @return int The number of search threads
+	 */
+	public int getSearchThreads() {
+		return searchThreads;
+	}
+
+	/**
+	 * Setter method that sets how many threads the AI searches with. The
+	 * threads all share the transposition table of the game.
+	 * 
+	 * @param threads
+	 *            The number of search threads
+	 */
+	public void setSearchThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("There must be at least one "
+					+ "search thread");
+		}
+		if (parallelSearch != null) {
+			parallelSearch.shutdown();
+			parallelSearch = null;
+		}
+		this.searchThreads = threads;
+	}
+
+	/**
+	 * Getter method that returns how many plies the AI looks ahead.
+	 * 
+	 * @return int The depth of the AI search
+	 */
+	public int getSearchDepth() {
+		return search.getMaxDepth();
+	}
+
+	/**
+	 * Setter method that sets how many plies the AI looks ahead.
+	 * 
+	 * @param depth
+	 *            The depth of the AI search
+	 */
+	public void setSearchDepth(final int depth) {
+		search.setMaxDepth(depth);
+	}
+
+	/**
+	 * Getter method that returns the evaluator that scores the positions
+	 * the AI search stops at.
+	 * 
+	 * @return Evaluator The evaluator, or null if they all score 0
+	 */
+	public Evaluator getEvaluator() {
+		return search.getEvaluator();
+	}
+
+	/**
+	 * Setter method that sets the evaluator that scores the positions the
+	 * AI search stops at.
+	 * 
+	 * @param evaluator
+	 *            The evaluator, which no other game may share, or null
+	 */
+	public void setEvaluator(final Evaluator evaluator) {
+		search.setEvaluator(evaluator);
+	}
+
+	/**
+	 * Getter method that returns how long the AI may think about a move.
+	 * 
+	 * @return long The time budget in milliseconds
+	 */
+	public long getSearchTime() {
+		return search.getTimeLimit();
+	}
+
+	/**
+	 * Setter method that sets how long the AI may think about a move.
+	 * 
+	 * @param time
+	 *            The time budget in milliseconds
+	 */
+	public void setSearchTime(final long time) {
+		search.setTimeLimit(time);
+	}
+
+	/**
+	 * Getter method that returns the number of rows on the board.
+	 * 
+	 * @return int The number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Getter method that returns the number of columns on the board.
+	 * 
+	 * @return int The number of columns
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 * 
+	 * @return int The length of a winning row
+	 */
+	public int getConnect() {
+		return connect;
 	}
 
 	// CHECKSTYLE:OFF
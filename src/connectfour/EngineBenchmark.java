@@ -0,0 +1,423 @@
+package connectfour;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class measures the hot paths of the game engine over a corpus of
+ * recorded positions: selecting moves, checking the status of the board,
+ * rating the available moves, taking snapshots of the current state and
+ * the full AI search. Every benchmark is warmed up first and then run for
+ * a number of timed iterations, and the operations per second and the
+ * bytes allocated per operation are printed as CSV.
+ *
+ * <p>
+ * The results can be saved and later passed back in as a baseline. Any
+ * benchmark that is slower than its baseline by more than the tolerance
+ * is reported and the benchmark exits with status 1, so it can be run
+ * before every release to catch performance regressions.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class EngineBenchmark {
+
+	/** The corpus that is used when no other file is given. */
+	private static final Path DEFAULT_CORPUS =
+			Paths.get("src/benchmarkPositions.txt");
+
+	/** How many untimed iterations warm up the JIT. */
+	private static final int WARMUP_ITERATIONS = 3;
+
+	/** How many timed iterations are measured. */
+	private static final int ITERATIONS = 5;
+
+	/** How many plies the AI looks ahead in the miniMax benchmark. */
+	private static final int SEARCH_DEPTH = 6;
+
+	/** The header of the CSV that is printed and saved. */
+	private static final String HEADER =
+			"benchmark,ops_per_second,error,bytes_per_op";
+
+	/** Games with every recorded position played on them. */
+	private final ConnectFourGame[] games;
+
+	/** Empty games that every recorded position is played on and undone. */
+	private final ConnectFourGame[] emptyGames;
+
+	/** The search one ply deep that rates the available moves. */
+	private final Negamax rateSearch = new Negamax(1, Long.MAX_VALUE / 2);
+
+	/** Bitboards with every recorded position played on them. */
+	private final Bitboard[] boards;
+
+	/** Whose turn it is in every recorded position. */
+	private final Player[] players;
+
+	/** The recorded positions, as the columns played from the start. */
+	private final List<String> corpus;
+
+	/** Keeps the JIT from removing work whose result is never used. */
+	private long sink;
+
+	/** Time spent by the benchmarks on work that is not measured. */
+	private long untimedNanos;
+
+	/** Bytes allocated by the benchmarks on work that is not measured. */
+	private long untimedBytes;
+
+	/**
+	 * This interface is a single benchmark. Each call runs it once over the
+	 * whole corpus.
+	 */
+	private interface Benchmark {
+
+		/**
+		 * Method that runs the benchmark once.
+		 *
+		 * @return long How many operations were run
+		 */
+		long run();
+	}
+
+	/**
+	 * Constructor that plays every recorded position on a game and on a
+	 * bitboard, and creates an empty game for each, so the benchmarks do
+	 * not measure setting them up.
+	 *
+	 * @param corpus
+	 *            The recorded positions
+	 */
+	private EngineBenchmark(final List<String> corpus) {
+		this.corpus = corpus;
+		this.games = new ConnectFourGame[corpus.size()];
+		this.emptyGames = new ConnectFourGame[corpus.size()];
+		this.boards = new Bitboard[corpus.size()];
+		this.players = new Player[corpus.size()];
+		for (int i = 0; i < corpus.size(); i++) {
+			games[i] = replay(corpus.get(i));
+			games[i].setSearchDepth(SEARCH_DEPTH);
+			games[i].setSearchTime(Long.MAX_VALUE / 2);
+			games[i].setTableSize(1);
+			boards[i] = new Bitboard(games[i].getCurrentState());
+			players[i] = games[i].getPlayer();
+			emptyGames[i] = new ConnectFourGame(Player.PLAYER1, false);
+		}
+	}
+
+	/**
+	 * Main method that runs every benchmark.
+	 *
+	 * @param args
+	 *            Optionally the corpus file, the CSV file to save the
+	 *            results to, the CSV file of a baseline to compare against
+	 *            and the tolerance in percent
+	 * @throws IOException
+	 *             If a file cannot be read or written
+	 */
+	public static void main(final String[] args) throws IOException {
+		Path corpusFile = args.length > 0 ? Paths.get(args[0])
+				: DEFAULT_CORPUS;
+		Path output = args.length > 1 ? Paths.get(args[1]) : null;
+		Path baseline = args.length > 2 ? Paths.get(args[2]) : null;
+		double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+
+		EngineBenchmark benchmark = new EngineBenchmark(
+				readCorpus(corpusFile));
+		Map<String, double[]> results = benchmark.runAll();
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(HEADER);
+		for (Map.Entry<String, double[]> result : results.entrySet()) {
+			double[] value = result.getValue();
+			lines.add(String.format("%s,%.0f,%.0f,%.1f", result.getKey(),
+					value[0], value[1], value[2]));
+		}
+		for (String line : lines) {
+			System.out.println(line);
+		}
+		if (output != null) {
+			Files.write(output, lines, StandardCharsets.UTF_8);
+		}
+		if (baseline != null && !compare(results, baseline, tolerance)) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Helper method that runs every benchmark and collects the results.
+	 *
+	 * @return Map The operations per second, their error and the bytes per
+	 *         operation of every benchmark, in the order they were run
+	 */
+	private Map<String, double[]> runAll() {
+		Map<String, double[]> results = new LinkedHashMap<String, double[]>();
+		results.put("selectMove", measure(this::selectMove, 200));
+		results.put("checkStatus", measure(this::checkStatus, 200));
+		results.put("rateMoves", measure(this::rateMoves, 200));
+		results.put("getCurrentState", measure(this::getCurrentState, 200));
+		results.put("miniMax", measure(this::miniMax, 1000));
+		if (sink == 42) {
+			System.out.println();
+		}
+		return results;
+	}
+
+	/**
+	 * Helper method that warms up a benchmark and then measures it.
+	 *
+	 * @param benchmark
+	 *            The benchmark that is measured
+	 * @param millis
+	 *            How long each iteration runs for
+	 * @return double[] The operations per second, the error of that (the
+	 *         standard deviation between iterations) and the bytes
+	 *         allocated per operation, leaving out the work a benchmark
+	 *         marks as not measured
+	 */
+	private double[] measure(final Benchmark benchmark, final long millis) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iterate(benchmark, millis);
+		}
+		double[] rates = new double[ITERATIONS];
+		long operations = 0;
+		long allocated = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			untimedNanos = 0;
+			untimedBytes = 0;
+			long before = allocatedBytes();
+			long start = System.nanoTime();
+			long ops = iterate(benchmark, millis);
+			long elapsed = System.nanoTime() - start - untimedNanos;
+			allocated += allocatedBytes() - before - untimedBytes;
+			operations += ops;
+			rates[i] = ops * 1e9 / elapsed;
+		}
+		double mean = 0;
+		for (double rate : rates) {
+			mean += rate / ITERATIONS;
+		}
+		double variance = 0;
+		for (double rate : rates) {
+			variance += (rate - mean) * (rate - mean) / (ITERATIONS - 1);
+		}
+		double bytes = allocatedBytes() < 0 ? Double.NaN
+				: (double) allocated / operations;
+		return new double[] {mean, Math.sqrt(variance), bytes};
+	}
+
+	/**
+	 * Helper method that runs a benchmark over and over for a while.
+	 *
+	 * @param benchmark
+	 *            The benchmark that is run
+	 * @param millis
+	 *            How long to keep running it
+	 * @return long How many operations were run
+	 */
+	private static long iterate(final Benchmark benchmark,
+			final long millis) {
+		long deadline = System.nanoTime() + millis * 1000000;
+		long ops = 0;
+		do {
+			ops += benchmark.run();
+		} while (System.nanoTime() < deadline);
+		return ops;
+	}
+
+	/**
+	 * Benchmark that plays every recorded game on an empty board, one
+	 * selectMove at a time. The moves are then undone to empty the boards
+	 * for the next run, which is not measured.
+	 *
+	 * @return long The number of moves selected
+	 */
+	private long selectMove() {
+		long ops = 0;
+		for (int i = 0; i < emptyGames.length; i++) {
+			ConnectFourGame game = emptyGames[i];
+			String moves = corpus.get(i);
+			for (int j = 0; j < moves.length(); j++) {
+				game.selectMove(0, moves.charAt(j) - '0', game.getPlayer());
+			}
+			sink += game.getPlayer().ordinal();
+			ops += moves.length();
+		}
+		long start = System.nanoTime();
+		long before = allocatedBytes();
+		for (ConnectFourGame game : emptyGames) {
+			while (game.undo() != null) {
+				sink++;
+			}
+		}
+		untimedBytes += allocatedBytes() - before;
+		untimedNanos += System.nanoTime() - start;
+		return ops;
+	}
+
+	/**
+	 * Benchmark that checks every recorded position for a win by either
+	 * player, which is what checkStatus does after every move.
+	 *
+	 * @return long The number of positions checked
+	 */
+	private long checkStatus() {
+		for (Bitboard board : boards) {
+			if (board.hasWon(Player.PLAYER1)
+					|| board.hasWon(Player.PLAYER2)) {
+				sink++;
+			}
+		}
+		return boards.length * 2;
+	}
+
+	/**
+	 * Benchmark that generates and rates the available moves of every
+	 * recorded position with a search one ply deep, which took over from
+	 * availableMoves and rateMove.
+	 *
+	 * @return long The number of positions rated
+	 */
+	private long rateMoves() {
+		for (int i = 0; i < boards.length; i++) {
+			sink += rateSearch.search(boards[i], players[i]).getCol();
+		}
+		return boards.length;
+	}
+
+	/**
+	 * Benchmark that takes a snapshot of every recorded game.
+	 *
+	 * @return long The number of snapshots taken
+	 */
+	private long getCurrentState() {
+		for (ConnectFourGame game : games) {
+			sink += game.getCurrentState().getMoves();
+		}
+		return games.length;
+	}
+
+	/**
+	 * Benchmark that asks the AI for a move in every recorded game. The
+	 * transposition table is cleared first so each search starts cold, the
+	 * same way the first search of a new game does.
+	 *
+	 * @return long The number of searches run
+	 */
+	private long miniMax() {
+		for (ConnectFourGame game : games) {
+			if (game.getTranspositionTable() != null) {
+				game.getTranspositionTable().clear();
+			}
+			sink += game.miniMax(game.getCurrentState(), game.getPlayer())
+					.getCol();
+		}
+		return games.length;
+	}
+
+	/**
+	 * Helper method that plays a recorded game on a new game board.
+	 *
+	 * @param moves
+	 *            The columns played from the start
+	 * @return ConnectFourGame The game after every move was played
+	 */
+	private static ConnectFourGame replay(final String moves) {
+		ConnectFourGame game = new ConnectFourGame(Player.PLAYER1, false);
+		for (int i = 0; i < moves.length(); i++) {
+			game.selectMove(0, moves.charAt(i) - '0', game.getPlayer());
+		}
+		return game;
+	}
+
+	/**
+	 * Helper method that reads the recorded positions. Blank lines and
+	 * lines starting with # are skipped.
+	 *
+	 * @param file
+	 *            The corpus file
+	 * @return List The recorded positions
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	private static List<String> readCorpus(final Path file)
+			throws IOException {
+		List<String> corpus = new ArrayList<String>();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				corpus.add(line);
+			}
+		}
+		if (corpus.isEmpty()) {
+			throw new IOException(file + " has no positions");
+		}
+		return corpus;
+	}
+
+	/**
+	 * Helper method that compares the results with a saved baseline and
+	 * prints every benchmark that got slower by more than the tolerance.
+	 *
+	 * @param results
+	 *            The results of this run
+	 * @param file
+	 *            The CSV file of the baseline
+	 * @param tolerance
+	 *            How many percent slower a benchmark may be
+	 * @return boolean If no benchmark regressed
+	 * @throws IOException
+	 *             If the baseline cannot be read
+	 */
+	private static boolean compare(final Map<String, double[]> results,
+			final Path file, final double tolerance) throws IOException {
+		Map<String, Double> baseline = new HashMap<String, Double>();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			String[] fields = line.split(",");
+			if (fields.length > 1 && !line.equals(HEADER)) {
+				baseline.put(fields[0], Double.valueOf(fields[1]));
+			}
+		}
+		boolean passed = true;
+		for (Map.Entry<String, double[]> result : results.entrySet()) {
+			Double expected = baseline.get(result.getKey());
+			if (expected == null) {
+				continue;
+			}
+			double change = (result.getValue()[0] - expected) / expected * 100;
+			if (change < -tolerance) {
+				System.err.printf("%s regressed by %.1f%% (%.0f ops/s, "
+						+ "baseline %.0f)%n", result.getKey(), -change,
+						result.getValue()[0], expected);
+				passed = false;
+			}
+		}
+		return passed;
+	}
+
+	/**
+	 * Helper method that returns how many bytes the current thread has
+	 * allocated so far.
+	 *
+	 * @return long The number of bytes, or -1 if the JVM cannot tell
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean =
+				ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,44 @@
+package connectfour;
+
+/**
+ * This interface is told what every move of a game cost, so the engine can
+ * be watched in production. A game without a listener does no measuring at
+ * all. A listener that is shared by many games is called from many threads
+ * at once.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public interface EngineListener {
+
+	/**
+	 * Method that is called after a move was played and the game checked
+	 * whether it ended.
+	 *
+	 * @param nanos
+	 *            How long the move took, in nanoseconds
+	 */
+	void moveSelected(long nanos);
+
+	/**
+	 * Method that is called after the AI picked a move.
+	 *
+	 * @param nanos
+	 *            How long the AI took, in nanoseconds
+	 * @param nodes
+	 *            How many positions the search visited, or zero if the
+	 *            move came from the opening book
+	 * @param depth
+	 *            The deepest iteration of the search that finished
+	 * @param tableHits
+	 *            How many table lookups found their position
+	 * @param tableMisses
+	 *            How many table lookups did not find their position
+	 * @param cutoffs
+	 *            How many positions had a beta cutoff
+	 * @param firstMoveCutoffs
+	 *            How many of those cutoffs came from the first move
+	 */
+	void aiMoved(long nanos, long nodes, int depth, long tableHits,
+			long tableMisses, long cutoffs, long firstMoveCutoffs);
+}
@@ -0,0 +1,278 @@
+package connectfour;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class adds up what the moves of any number of games cost: latency
+ * histograms of playing a move and of the AI picking one, and the nodes,
+ * depth, table hits and beta cutoffs of every AI search. It is given to
+ * games as their EngineListener and can be registered with the platform
+ * MBean server, so the numbers can be read and alerted on through JMX.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class EngineMetrics implements EngineListener, EngineMetricsMBean {
+
+	/** The domain the metrics are registered under. */
+	public static final String DOMAIN = "connectfour";
+
+	/** How long an AI move may take by default before it counts as slow. */
+	private static final long DEFAULT_SLOW_MOVE_MILLIS = 1000;
+
+	/** How long it took to play each move. */
+	private final LatencyHistogram selectMoves = new LatencyHistogram();
+
+	/** How long the AI took for each move. */
+	private final LatencyHistogram aiMoves = new LatencyHistogram();
+
+	/** How many AI moves took longer than the slow move limit. */
+	private final LongAdder slowAiMoves = new LongAdder();
+
+	/** How many positions the AI visited. */
+	private final LongAdder nodes = new LongAdder();
+
+	/** The sum of the depths the AI finished. */
+	private final LongAdder depths = new LongAdder();
+
+	/** The deepest depth the AI finished. */
+	private final AtomicInteger maxDepth = new AtomicInteger();
+
+	/** How many table lookups found their position. */
+	private final LongAdder tableHits = new LongAdder();
+
+	/** How many table lookups missed. */
+	private final LongAdder tableMisses = new LongAdder();
+
+	/** How many positions had a beta cutoff. */
+	private final LongAdder cutoffs = new LongAdder();
+
+	/** How many cutoffs came from the first move searched. */
+	private final LongAdder firstMoveCutoffs = new LongAdder();
+
+	/** How long an AI move may take before it counts as slow. */
+	private volatile long slowMoveNanos = DEFAULT_SLOW_MOVE_MILLIS * 1000000L;
+
+	/** The name the metrics are registered under, or null. */
+	private ObjectName objectName;
+
+	@Override
+	public void moveSelected(final long nanos) {
+		selectMoves.record(nanos);
+	}
+
+	@Override
+	public void aiMoved(final long nanos, final long nodes, final int depth,
+			final long tableHits, final long tableMisses, final long cutoffs,
+			final long firstMoveCutoffs) {
+		aiMoves.record(nanos);
+		if (nanos > slowMoveNanos) {
+			slowAiMoves.increment();
+		}
+		this.nodes.add(nodes);
+		depths.add(depth);
+		if (depth > maxDepth.get()) {
+			maxDepth.accumulateAndGet(depth, Math::max);
+		}
+		this.tableHits.add(tableHits);
+		this.tableMisses.add(tableMisses);
+		this.cutoffs.add(cutoffs);
+		this.firstMoveCutoffs.add(firstMoveCutoffs);
+	}
+
+	/**
+	 * Method that registers the metrics with the platform MBean server
+	 * under the name connectfour:type=EngineMetrics,name=the given name.
+	 *
+	 * @param name
+	 *            The name that tells these metrics apart from others
+	 * @throws JMException
+	 *             If the metrics cannot be registered
+	 */
+	public synchronized void register(final String name)
+			throws JMException {
+		unregister();
+		ObjectName registered = new ObjectName(DOMAIN
+				+ ":type=EngineMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				registered);
+		objectName = registered;
+	}
+
+	/**
+	 * Method that removes the metrics from the platform MBean server, if
+	 * they were registered.
+	 *
+	 * @throws JMException
+	 *             If the metrics cannot be removed
+	 */
+	public synchronized void unregister() throws JMException {
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * Getter method that returns the histogram of how long it took to
+	 * play each move.
+	 *
+	 * @return LatencyHistogram The histogram
+	 */
+	public LatencyHistogram getSelectMoveLatency() {
+		return selectMoves;
+	}
+
+	/**
+	 * Getter method that returns the histogram of how long the AI took
+	 * for each move.
+	 *
+	 * @return LatencyHistogram The histogram
+	 */
+	public LatencyHistogram getAiMoveLatency() {
+		return aiMoves;
+	}
+
+	@Override
+	public long getMovesSelected() {
+		return selectMoves.getCount();
+	}
+
+	@Override
+	public double getSelectMoveMillis50() {
+		return toMillis(selectMoves.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getSelectMoveMillis99() {
+		return toMillis(selectMoves.getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getSelectMoveMillisMax() {
+		return toMillis(selectMoves.getMax());
+	}
+
+	@Override
+	public long getAiMoves() {
+		return aiMoves.getCount();
+	}
+
+	@Override
+	public double getAiMoveMillis50() {
+		return toMillis(aiMoves.getValueAtPercentile(50));
+	}
+
+	@Override
+	public double getAiMoveMillis99() {
+		return toMillis(aiMoves.getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getAiMoveMillisMax() {
+		return toMillis(aiMoves.getMax());
+	}
+
+	@Override
+	public long getSlowAiMoves() {
+		return slowAiMoves.sum();
+	}
+
+	@Override
+	public long getSlowMoveMillis() {
+		return slowMoveNanos / 1000000L;
+	}
+
+	@Override
+	public void setSlowMoveMillis(final long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("The slow move limit cannot "
+					+ "be negative");
+		}
+		slowMoveNanos = millis * 1000000L;
+	}
+
+	@Override
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	@Override
+	public double getNodesPerSecond() {
+		double seconds = aiMoves.getMean() * aiMoves.getCount() / 1e9;
+		return seconds == 0 ? 0 : nodes.sum() / seconds;
+	}
+
+	@Override
+	public double getAverageDepth() {
+		long moves = aiMoves.getCount();
+		return moves == 0 ? 0 : (double) depths.sum() / moves;
+	}
+
+	@Override
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public long getTableHits() {
+		return tableHits.sum();
+	}
+
+	@Override
+	public long getTableMisses() {
+		return tableMisses.sum();
+	}
+
+	@Override
+	public double getTableHitRate() {
+		long hits = tableHits.sum();
+		long lookups = hits + tableMisses.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public long getCutoffs() {
+		return cutoffs.sum();
+	}
+
+	@Override
+	public double getFirstMoveCutoffRate() {
+		long all = cutoffs.sum();
+		return all == 0 ? 0 : (double) firstMoveCutoffs.sum() / all;
+	}
+
+	@Override
+	public void reset() {
+		selectMoves.reset();
+		aiMoves.reset();
+		slowAiMoves.reset();
+		nodes.reset();
+		depths.reset();
+		maxDepth.set(0);
+		tableHits.reset();
+		tableMisses.reset();
+		cutoffs.reset();
+		firstMoveCutoffs.reset();
+	}
+
+	/**
+	 * Helper method that turns nanoseconds into milliseconds.
+	 *
+	 * @param nanos
+	 *            The time in nanoseconds
+	 * @return double The time in milliseconds
+	 */
+	private static double toMillis(final long nanos) {
+		return nanos / 1e6;
+	}
+}
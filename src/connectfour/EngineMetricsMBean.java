@@ -0,0 +1,164 @@
+package connectfour;
+
+/**
+ * This interface is what EngineMetrics shows through JMX. Latencies are in
+ * milliseconds.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public interface EngineMetricsMBean {
+
+	/**
+	 * Getter method that returns how many moves were played.
+	 *
+	 * @return long The number of moves
+	 */
+	long getMovesSelected();
+
+	/**
+	 * Getter method that returns the median time it took to play a move.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getSelectMoveMillis50();
+
+	/**
+	 * Getter method that returns the time 99% of the moves were played in.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getSelectMoveMillis99();
+
+	/**
+	 * Getter method that returns the longest time it took to play a move.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getSelectMoveMillisMax();
+
+	/**
+	 * Getter method that returns how many moves the AI picked.
+	 *
+	 * @return long The number of AI moves
+	 */
+	long getAiMoves();
+
+	/**
+	 * Getter method that returns the median time the AI took per move.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getAiMoveMillis50();
+
+	/**
+	 * Getter method that returns the time 99% of the AI moves took at most.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getAiMoveMillis99();
+
+	/**
+	 * Getter method that returns the longest time the AI took for a move.
+	 *
+	 * @return double The time in milliseconds
+	 */
+	double getAiMoveMillisMax();
+
+	/**
+	 * Getter method that returns how many AI moves took longer than the
+	 * slow move limit.
+	 *
+	 * @return long The number of slow moves
+	 */
+	long getSlowAiMoves();
+
+	/**
+	 * Getter method that returns how long an AI move may take before it
+	 * counts as slow.
+	 *
+	 * @return long The limit in milliseconds
+	 */
+	long getSlowMoveMillis();
+
+	/**
+	 * Setter method that sets how long an AI move may take before it counts
+	 * as slow.
+	 *
+	 * @param millis
+	 *            The limit in milliseconds
+	 */
+	void setSlowMoveMillis(long millis);
+
+	/**
+	 * Getter method that returns how many positions the AI visited.
+	 *
+	 * @return long The number of nodes
+	 */
+	long getNodes();
+
+	/**
+	 * Getter method that returns how many positions the AI visited per
+	 * second it spent thinking.
+	 *
+	 * @return double The number of nodes per second
+	 */
+	double getNodesPerSecond();
+
+	/**
+	 * Getter method that returns the average depth the AI finished.
+	 *
+	 * @return double The average depth
+	 */
+	double getAverageDepth();
+
+	/**
+	 * Getter method that returns the deepest depth the AI finished.
+	 *
+	 * @return int The depth
+	 */
+	int getMaxDepth();
+
+	/**
+	 * Getter method that returns how many table lookups found their
+	 * position.
+	 *
+	 * @return long The number of table hits
+	 */
+	long getTableHits();
+
+	/**
+	 * Getter method that returns how many table lookups missed.
+	 *
+	 * @return long The number of table misses
+	 */
+	long getTableMisses();
+
+	/**
+	 * Getter method that returns the share of table lookups that hit.
+	 *
+	 * @return double The hit rate, between 0 and 1
+	 */
+	double getTableHitRate();
+
+	/**
+	 * Getter method that returns how many positions had a beta cutoff.
+	 *
+	 * @return long The number of cutoffs
+	 */
+	long getCutoffs();
+
+	/**
+	 * Getter method that returns the share of beta cutoffs that came from
+	 * the first move searched.
+	 *
+	 * @return double The share, between 0 and 1
+	 */
+	double getFirstMoveCutoffRate();
+
+	/**
+	 * Method that starts every count and histogram over.
+	 *
+	 */
+	void reset();
+}
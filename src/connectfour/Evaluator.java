@@ -0,0 +1,73 @@
+package connectfour;
+
+/**
+ * This interface scores positions that a search stops at before the end of
+ * the game. An evaluator is told about every move the search makes and
+ * takes back, so it can keep parts of its score up to date as it goes
+ * instead of working them out again at every leaf. Each search needs an
+ * evaluator of its own.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public interface Evaluator {
+
+	/**
+	 * Highest score an evaluator may give. Anything higher would be taken
+	 * for a proven win.
+	 */
+	int MAX_SCORE = Negamax.WIN_SCORE - Negamax.MAX_CELLS - 1;
+
+	/**
+	 * Method that is called before a search starts, so the evaluator can
+	 * work out its score of the root position from scratch.
+	 *
+	 * @param board
+	 *            The position that is going to be searched
+	 */
+	void reset(Board board);
+
+	/**
+	 * Method that is called right after the search dropped a piece.
+	 *
+	 * @param board
+	 *            The position with the piece on it
+	 * @param col
+	 *            The column the piece was dropped in
+	 * @param player
+	 *            The player who owns the piece
+	 */
+	void played(Board board, int col, Player player);
+
+	/**
+	 * Method that is called right before the search takes a piece back.
+	 *
+	 * @param board
+	 *            The position with the piece still on it
+	 * @param col
+	 *            The column the piece is taken from
+	 * @param player
+	 *            The player who owns the piece
+	 */
+	void undone(Board board, int col, Player player);
+
+	/**
+	 * Method that scores a position that is not over.
+	 *
+	 * @param board
+	 *            The position
+	 * @param player
+	 *            Whose turn it is
+	 * @return int The score for the player, between -MAX_SCORE and
+	 *         MAX_SCORE
+	 */
+	int evaluate(Board board, Player player);
+
+	/**
+	 * Method that creates a new evaluator that scores the same way, for a
+	 * search on another thread.
+	 *
+	 * @return Evaluator The new evaluator
+	 */
+	Evaluator copy();
+}
@@ -0,0 +1,274 @@
+package connectfour;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class writes Java Flight Recorder events for moves, AI searches and
+ * games, so a slow AI turn in a recording can be lined up with garbage
+ * collections and other threads. The game is built for Java 8, where the
+ * JFR API cannot be compiled against, so the event types are defined at
+ * run time through jdk.jfr.EventFactory when the runtime has it. On a
+ * runtime without JFR, or while no recording is running, beginning an
+ * event returns null after checking a single flag, and nothing else is
+ * done.
+ *
+ * <p>
+ * Every event carries the hash of the board and a depth: the number of
+ * pieces on the board for moves and games, and the search depth for AI
+ * moves and search iterations. Moves, AI moves and search iterations are
+ * timed from begin to commit, and a game that ends carries how long it
+ * lasted.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+final class FlightEvents {
+
+	/** The category every event is listed under. */
+	private static final String CATEGORY = "Connect Four";
+
+	/** A move was played on a game. */
+	static final Kind SELECT_MOVE = define("SelectMove", "Select Move",
+			false, field(long.class, "hash", "Board Hash", false),
+			field(int.class, "depth", "Pieces", false),
+			field(int.class, "column", "Column", false));
+
+	/** The AI picked a move. */
+	static final Kind AI_MOVE = define("AiMove", "AI Move", true,
+			field(long.class, "hash", "Board Hash", false),
+			field(int.class, "depth", "Depth", false),
+			field(int.class, "column", "Column", false),
+			field(long.class, "nodes", "Nodes", false));
+
+	/** One iteration of an AI search finished. */
+	static final Kind SEARCH_ITERATION = define("SearchIteration",
+			"Search Iteration", false,
+			field(long.class, "hash", "Board Hash", false),
+			field(int.class, "depth", "Depth", false),
+			field(long.class, "nodes", "Nodes", false),
+			field(int.class, "score", "Score", false));
+
+	/** A game was created. */
+	static final Kind GAME_START = define("GameStart", "Game Start", false,
+			field(long.class, "hash", "Board Hash", false),
+			field(int.class, "depth", "Pieces", false),
+			field(String.class, "board", "Board", false));
+
+	/** A game was won or tied. */
+	static final Kind GAME_END = define("GameEnd", "Game End", false,
+			field(long.class, "hash", "Board Hash", false),
+			field(int.class, "depth", "Pieces", false),
+			field(String.class, "status", "Status", false),
+			field(long.class, "gameDuration", "Game Duration", true));
+
+	/** Event.begin, or null without JFR. */
+	private static final MethodHandle BEGIN;
+
+	/** Event.set, or null without JFR. */
+	private static final MethodHandle SET;
+
+	/** Event.commit, or null without JFR. */
+	private static final MethodHandle COMMIT;
+
+	static {
+		MethodHandle begin = null;
+		MethodHandle set = null;
+		MethodHandle commit = null;
+		try {
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			MethodType none = MethodType.methodType(void.class);
+			begin = lookup.findVirtual(event, "begin", none)
+					.asType(MethodType.methodType(void.class, Object.class));
+			set = lookup.findVirtual(event, "set", MethodType.methodType(
+					void.class, int.class, Object.class)).asType(
+					MethodType.methodType(void.class, Object.class, int.class,
+					Object.class));
+			commit = lookup.findVirtual(event, "commit", none)
+					.asType(MethodType.methodType(void.class, Object.class));
+		} catch (ReflectiveOperationException | LinkageError e) {
+			begin = null;
+		}
+		BEGIN = begin;
+		SET = set;
+		COMMIT = commit;
+	}
+
+	/**
+	 * This class is one type of event.
+	 */
+	static final class Kind {
+
+		/** Whether the type is recorded right now, as a handle. */
+		private final MethodHandle enabled;
+
+		/** Creates a new event of the type, as a handle. */
+		private final MethodHandle create;
+
+		/** The factory of the type, which has to be kept reachable. */
+		private final Object factory;
+
+		/**
+		 * Constructor that instantiates a new type of event.
+		 *
+		 * @param enabled
+		 *            Returns whether the type is recorded right now
+		 * @param create
+		 *            Creates a new event of the type
+		 * @param factory
+		 *            The factory of the type
+		 */
+		Kind(final MethodHandle enabled, final MethodHandle create,
+				final Object factory) {
+			this.enabled = enabled;
+			this.create = create;
+			this.factory = factory;
+		}
+	}
+
+	/**
+	 * Constructor that keeps this class from being instantiated.
+	 *
+	 */
+	private FlightEvents() {
+	}
+
+	/**
+	 * Method that starts timing an event, if its type is being recorded.
+	 *
+	 * @param kind
+	 *            The type of the event
+	 * @return Object The event, or null if nothing is recorded
+	 */
+	static Object begin(final Kind kind) {
+		if (kind == null || BEGIN == null) {
+			return null;
+		}
+		try {
+			if (!(boolean) kind.enabled.invokeExact()) {
+				return null;
+			}
+			Object event = kind.create.invokeExact();
+			BEGIN.invokeExact(event);
+			return event;
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Method that fills in the fields of an event, in the order its type
+	 * defines them, and records it.
+	 *
+	 * @param event
+	 *            The event from begin, or null to do nothing
+	 * @param values
+	 *            The value of every field of the event
+	 */
+	static void commit(final Object event, final Object... values) {
+		if (event == null) {
+			return;
+		}
+		try {
+			for (int i = 0; i < values.length; i++) {
+				SET.invokeExact(event, i, values[i]);
+			}
+			COMMIT.invokeExact(event);
+		} catch (Throwable e) {
+			return;
+		}
+	}
+
+	/**
+	 * Helper method that describes one field of an event type.
+	 *
+	 * @param type
+	 *            The type of the field
+	 * @param name
+	 *            The name of the field
+	 * @param label
+	 *            The name shown for the field
+	 * @param timespan
+	 *            If the field is a number of nanoseconds
+	 * @return Object[] The description
+	 */
+	private static Object[] field(final Class<?> type, final String name,
+			final String label, final boolean timespan) {
+		return new Object[] {type, name, label, timespan};
+	}
+
+	/**
+	 * Helper method that defines a type of event with JFR.
+	 *
+	 * @param name
+	 *            The name of the type, under connectfour
+	 * @param label
+	 *            The name shown for the type
+	 * @param stackTrace
+	 *            If a stack trace is recorded with every event
+	 * @param fields
+	 *            The fields of the type, from field
+	 * @return Kind The type, or null if the runtime has no JFR
+	 */
+	private static Kind define(final String name, final String label,
+			final boolean stackTrace, final Object[]... fields) {
+		try {
+			Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> element = elementClass.getConstructor(Class.class,
+					Object.class);
+			Constructor<?> descriptor = descriptorClass.getConstructor(
+					Class.class, String.class, List.class);
+
+			List<Object> annotations = new ArrayList<Object>();
+			annotations.add(element.newInstance(
+					Class.forName("jdk.jfr.Name"), "connectfour." + name));
+			annotations.add(element.newInstance(
+					Class.forName("jdk.jfr.Label"), label));
+			annotations.add(element.newInstance(
+					Class.forName("jdk.jfr.Category"),
+					new String[] {CATEGORY}));
+			annotations.add(element.newInstance(
+					Class.forName("jdk.jfr.StackTrace"), stackTrace));
+
+			List<Object> descriptors = new ArrayList<Object>();
+			for (Object[] field : fields) {
+				List<Object> fieldAnnotations = new ArrayList<Object>();
+				fieldAnnotations.add(element.newInstance(
+						Class.forName("jdk.jfr.Label"), field[2]));
+				if ((Boolean) field[3]) {
+					fieldAnnotations.add(element.newInstance(
+							Class.forName("jdk.jfr.Timespan"),
+							"NANOSECONDS"));
+				}
+				descriptors.add(descriptor.newInstance(field[0], field[1],
+						Collections.unmodifiableList(fieldAnnotations)));
+			}
+
+			Object factory = factoryClass.getMethod("create", List.class,
+					List.class).invoke(null, annotations, descriptors);
+			Object eventType = factoryClass.getMethod("getEventType")
+					.invoke(factory);
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			MethodHandle enabled = lookup.findVirtual(
+					Class.forName("jdk.jfr.EventType"), "isEnabled",
+					MethodType.methodType(boolean.class)).bindTo(eventType);
+			MethodHandle create = lookup.findVirtual(factoryClass, "newEvent",
+					MethodType.methodType(Class.forName("jdk.jfr.Event")))
+					.bindTo(factory).asType(MethodType.methodType(
+					Object.class));
+			return new Kind(enabled, create, factory);
+		} catch (ReflectiveOperationException | LinkageError
+				| IllegalArgumentException | SecurityException e) {
+			return null;
+		}
+	}
+}
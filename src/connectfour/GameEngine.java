@@ -0,0 +1,235 @@
+package connectfour;
+
+/**
+ * This class is a headless facade over ConnectFourGame for programs that
+ * play connect four without a display, such as game servers and analysis
+ * tools. It only depends on the game, the board and the AI, so no AWT or
+ * Swing classes are loaded when it is used, and any number of engines can
+ * run in one JVM.
+ *
+ * <p>
+ * An engine is not safe to use from several threads at once. Each game
+ * should have its own engine, or calls to it should be synchronized.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class GameEngine {
+
+	/** The game that the engine plays. */
+	private final ConnectFourGame game;
+
+	/**
+	 * Constructor that instantiates a new engine on an empty board where
+	 * the first player moves first.
+	 *
+	 */
+	public GameEngine() {
+		this(Player.PLAYER1);
+	}
+
+	/**
+	 * Constructor that instantiates a new engine on an empty board.
+	 *
+	 * @param startingPlayer
+	 *            The player who makes the first move
+	 */
+	public GameEngine(final Player startingPlayer) {
+		if (startingPlayer == Player.NONE) {
+			throw new IllegalArgumentException("NONE cannot start a game");
+		}
+		this.game = new ConnectFourGame(startingPlayer, false);
+	}
+
+	/**
+	 * Constructor that instantiates a new engine on an empty board of any
+	 * size, where any number of pieces in a row win.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param startingPlayer
+	 *            The player who makes the first move
+	 */
+	public GameEngine(final int rows, final int cols, final int connect,
+			final Player startingPlayer) {
+		if (startingPlayer == Player.NONE) {
+			throw new IllegalArgumentException("NONE cannot start a game");
+		}
+		this.game = new ConnectFourGame(rows, cols, connect, startingPlayer,
+				false);
+	}
+
+	/**
+	 * Method that drops a piece of the player whose turn it is into a
+	 * column.
+	 *
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @return int The row the piece landed in, where row zero is the top
+	 *         of the board
+	 * @throws IllegalStateException
+	 *             If the game is already over
+	 * @throws IllegalArgumentException
+	 *             If the column is not on the board or is full
+	 */
+	public int play(final int col) {
+		if (game.getGameStatus() != GameStatus.NotOverYet) {
+			throw new IllegalStateException("The game is already over");
+		}
+		if (!game.canPlay(col)) {
+			throw new IllegalArgumentException("Column " + col
+					+ " cannot be played");
+		}
+		int row = getRows() - 1 - game.getHeight(col);
+		game.selectMove(row, col, game.getPlayer());
+		return row;
+	}
+
+	/**
+	 * Method that asks the AI for the best move of the player whose turn
+	 * it is. The move is not played.
+	 *
+	 * @param budget
+	 *            How many milliseconds the AI may think
+	 * @return Move The best move, or null if the game is already over
+	 */
+	public Move bestMove(final long budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("The budget must be at least "
+					+ "1 millisecond");
+		}
+		game.setSearchTime(budget);
+		return game.miniMax(game.getCurrentState(), game.getPlayer());
+	}
+
+	/**
+	 * Method that proves the value of the current position, which is
+	 * whether the player to move wins, draws or loses with perfect play
+	 * and in how many plies. The move is not played.
+	 *
+	 * @return Solver.Solution The proven value of the position
+	 */
+	public Solver.Solution solve() {
+		return game.solve();
+	}
+
+	/**
+	 * Method that takes back the last move.
+	 *
+	 * @return boolean If there was a move to take back
+	 */
+	public boolean undo() {
+		return game.undo() != null;
+	}
+
+	/**
+	 * Method that plays again the last move that was taken back.
+	 *
+	 * @return boolean If there was a move to redo
+	 */
+	public boolean redo() {
+		return game.redo() != null;
+	}
+
+	/**
+	 * Getter method that returns the status of the game.
+	 *
+	 * @return GameStatus Whether the game was won, tied or is not over yet
+	 */
+	public GameStatus status() {
+		return game.getGameStatus();
+	}
+
+	/**
+	 * Getter method that returns whose turn it is. Once the game has been
+	 * won, the winner is the other player.
+	 *
+	 * @return Player The player to move
+	 */
+	public Player getPlayer() {
+		return game.getPlayer();
+	}
+
+	/**
+	 * Getter method that returns the player who won the game.
+	 *
+	 * @return Player The winner, or NONE if nobody has won
+	 */
+	public Player getWinner() {
+		return status() == GameStatus.Won ? game.getPlayer().next()
+				: Player.NONE;
+	}
+
+	/**
+	 * Getter method that returns an immutable snapshot of the board.
+	 *
+	 * @return Position The current position
+	 */
+	public Position getPosition() {
+		return game.getCurrentState();
+	}
+
+	/**
+	 * Method that checks if a piece can be dropped in a column.
+	 *
+	 * @param col
+	 *            The column
+	 * @return boolean If the game is not over and the column is on the
+	 *         board and not full
+	 */
+	public boolean canPlay(final int col) {
+		return game.getGameStatus() == GameStatus.NotOverYet
+				&& game.canPlay(col);
+	}
+
+	/**
+	 * Getter method that returns how many moves have been made.
+	 *
+	 * @return int The number of moves on the board
+	 */
+	public int getMoveCount() {
+		return game.getMoveCount();
+	}
+
+	/**
+	 * Getter method that returns the number of rows on the board.
+	 *
+	 * @return int The number of rows
+	 */
+	public int getRows() {
+		return game.getRows();
+	}
+
+	/**
+	 * Getter method that returns the number of columns on the board.
+	 *
+	 * @return int The number of columns
+	 */
+	public int getCols() {
+		return game.getCols();
+	}
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 *
+	 * @return int The length of a winning row
+	 */
+	public int getConnect() {
+		return game.getConnect();
+	}
+
+	/**
+	 * Getter method that returns the game the engine plays, so its AI
+	 * settings can be changed.
+	 *
+	 * @return ConnectFourGame The game
+	 */
+	public ConnectFourGame getGame() {
+		return game;
+	}
+}
@@ -0,0 +1,92 @@
+package connectfour;
+
+/**
+ * This class describes the binary format games are archived in. A record
+ * file starts with an 8 byte header: a magic number, the version, and the
+ * rows, columns and connect length of the board every game in the file was
+ * played on. Each game follows as one header byte, the number of plies as
+ * a variable length integer, and then the column of every ply packed into
+ * as few bits as the number of columns needs, three bits on the standard
+ * board. A full standard game takes 18 bytes.
+ *
+ * <p>
+ * The header byte of a game holds its result in the low two bits and
+ * whether the second player moved first in the bit above them. The plies
+ * are packed from the lowest bit of each byte up, and the last byte of a
+ * game is padded with zeros.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class GameRecord {
+
+	/** Magic number at the start of every record file. */
+	static final int MAGIC = 0x43344752;
+
+	/** Version of the file format. */
+	static final int VERSION = 1;
+
+	/** Size of the file header in bytes. */
+	static final int HEADER_BYTES = 8;
+
+	/** Most bytes the header and ply count of a game take. */
+	static final int MAX_GAME_HEADER_BYTES = 6;
+
+	/** Mask of the result in the header byte of a game. */
+	static final int RESULT_MASK = 3;
+
+	/** Bit of the header byte set when the second player moved first. */
+	static final int SECOND_STARTED = 4;
+
+	/** Result of a game that was not finished. */
+	public static final int UNFINISHED = 0;
+
+	/** Result of a game the first player won. */
+	public static final int PLAYER1_WON = 1;
+
+	/** Result of a game the second player won. */
+	public static final int PLAYER2_WON = 2;
+
+	/** Result of a game that ended in a tie. */
+	public static final int TIE = 3;
+
+	/**
+	 * Constructor that is private so the class is not instantiated.
+	 *
+	 */
+	private GameRecord() {
+	}
+
+	/**
+	 * Method that returns how many bits each ply takes on a board.
+	 *
+	 * @param cols
+	 *            The number of columns on the board
+	 * @return int The number of bits that hold any column
+	 */
+	public static int getBitsPerPly(final int cols) {
+		return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(
+				cols - 1));
+	}
+
+	/**
+	 * Method that returns the result of a game with a given status.
+	 *
+	 * @param status
+	 *            The status of the game
+	 * @param winner
+	 *            The player who won, if the game was won
+	 * @return int One of the results of this class
+	 */
+	public static int getResult(final GameStatus status,
+			final Player winner) {
+		if (status == GameStatus.Tie) {
+			return TIE;
+		}
+		if (status == GameStatus.Won) {
+			return winner == Player.PLAYER1 ? PLAYER1_WON : PLAYER2_WON;
+		}
+		return UNFINISHED;
+	}
+}
@@ -0,0 +1,351 @@
+package connectfour;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads a file of games in the format of GameRecord. The file is
+ * memory-mapped one window at a time, so files of any size can be read, and
+ * the reader is a cursor: it steps from game to game and from ply to ply
+ * and hands out plain columns, so iterating over billions of plies creates
+ * no objects at all.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class GameRecordReader implements Closeable {
+
+	/** Most bytes of the file that are mapped at once. */
+	private static final int WINDOW_BYTES = 1 << 30;
+
+	/** The channel of the file. */
+	private final FileChannel channel;
+
+	/** The size of the file in bytes. */
+	private final long size;
+
+	/** Number of rows of the board. */
+	private final int rows;
+
+	/** Number of columns of the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
+
+	/** How many bits each ply takes. */
+	private final int bitsPerPly;
+
+	/** Mask that takes one ply out of the packed bits. */
+	private final int plyMask;
+
+	/** The part of the file that is mapped. */
+	private MappedByteBuffer window;
+
+	/** Where in the file the mapped window starts. */
+	private long windowStart;
+
+	/** Where in the file the next game starts. */
+	private long next;
+
+	/** Where in the window the plies of the current game start. */
+	private int plyStart;
+
+	/** How many plies the current game has. */
+	private int plies;
+
+	/** The header byte of the current game. */
+	private int header;
+
+	/** How many plies of the current game have been read. */
+	private int ply;
+
+	/** Where in the window the next byte of plies is read from. */
+	private int readIndex;
+
+	/** Bits of plies that were read but not handed out yet. */
+	private int pending;
+
+	/** How many bits are pending. */
+	private int pendingBits;
+
+	/**
+	 * Constructor that opens a record file and checks its header.
+	 *
+	 * @param path
+	 *            The record file
+	 * @throws IOException
+	 *             If the file cannot be read or is not a record file
+	 */
+	public GameRecordReader(final Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			this.size = channel.size();
+			if (size < GameRecord.HEADER_BYTES) {
+				throw new IOException(path + " is not a game record file");
+			}
+			map(0);
+			if (window.getInt(0) != GameRecord.MAGIC
+					|| window.get(4) != GameRecord.VERSION) {
+				throw new IOException(path + " is not a game record file");
+			}
+			this.rows = window.get(5) & 0xFF;
+			this.cols = window.get(6) & 0xFF;
+			this.connect = window.get(7) & 0xFF;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.bitsPerPly = GameRecord.getBitsPerPly(cols);
+		this.plyMask = (1 << bitsPerPly) - 1;
+		this.next = GameRecord.HEADER_BYTES;
+	}
+
+	/**
+	 * Main method that reads a record file and prints how many games and
+	 * plies it holds, how the games ended and how fast it was read.
+	 *
+	 * @param args
+	 *            The record file
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: GameRecordReader <file>");
+			return;
+		}
+		long[] results = new long[GameRecord.RESULT_MASK + 1];
+		long games = 0;
+		long plies = 0;
+		long checksum = 0;
+		long start = System.nanoTime();
+		try (GameRecordReader reader = new GameRecordReader(
+				Paths.get(args[0]))) {
+			while (reader.nextGame()) {
+				games++;
+				results[reader.getResult()]++;
+				for (int col = reader.nextPly(); col >= 0;
+						col = reader.nextPly()) {
+					checksum += col;
+					plies++;
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d plies (checksum %d) in %.2f s, "
+				+ "%.0f plies/s%n", games, plies, checksum, seconds,
+				plies / seconds);
+		System.out.printf("unfinished %d, first player %d, second player "
+				+ "%d, tie %d%n", results[GameRecord.UNFINISHED],
+				results[GameRecord.PLAYER1_WON],
+				results[GameRecord.PLAYER2_WON], results[GameRecord.TIE]);
+	}
+
+	/**
+	 * Method that moves on to the next game of the file.
+	 *
+	 * @return boolean If there was another game
+	 * @throws IOException
+	 *             If the file is truncated or cannot be mapped
+	 */
+	public boolean nextGame() throws IOException {
+		if (next >= size) {
+			return false;
+		}
+		ensure(next, (int) Math.min(GameRecord.MAX_GAME_HEADER_BYTES,
+				size - next));
+		int index = (int) (next - windowStart);
+		int end = window.limit();
+		header = window.get(index++) & 0xFF;
+		int count = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (index >= end || shift > 28) {
+				throw new IOException("Game at byte " + next
+						+ " is truncated");
+			}
+			int b = window.get(index++);
+			count |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				break;
+			}
+		}
+		long data = windowStart + index;
+		int bytes = (int) (((long) count * bitsPerPly + 7) >>> 3);
+		if (count < 0 || data + bytes > size) {
+			throw new IOException("Game at byte " + next + " is truncated");
+		}
+		if (bytes > WINDOW_BYTES) {
+			throw new IOException("Game at byte " + next + " is too long");
+		}
+		ensure(data, bytes);
+		plies = count;
+		plyStart = (int) (data - windowStart);
+		next = data + bytes;
+		ply = 0;
+		readIndex = plyStart;
+		pending = 0;
+		pendingBits = 0;
+		return true;
+	}
+
+	/**
+	 * Method that reads the next ply of the current game.
+	 *
+	 * @return int The column of the ply, or -1 after the last ply
+	 */
+	public int nextPly() {
+		if (ply >= plies) {
+			return -1;
+		}
+		if (pendingBits < bitsPerPly) {
+			pending |= (window.get(readIndex++) & 0xFF) << pendingBits;
+			pendingBits += Byte.SIZE;
+		}
+		int col = pending & plyMask;
+		pending >>>= bitsPerPly;
+		pendingBits -= bitsPerPly;
+		ply++;
+		return col;
+	}
+
+	/**
+	 * Method that reads any ply of the current game.
+	 *
+	 * @param index
+	 *            The number of the ply, starting at zero
+	 * @return int The column of the ply
+	 */
+	public int getColumn(final int index) {
+		if (index < 0 || index >= plies) {
+			throw new IndexOutOfBoundsException("Ply " + index + " of "
+					+ plies);
+		}
+		long bit = (long) index * bitsPerPly;
+		int at = plyStart + (int) (bit >>> 3);
+		int bits = window.get(at) & 0xFF;
+		if (at + 1 < window.limit()) {
+			bits |= (window.get(at + 1) & 0xFF) << Byte.SIZE;
+		}
+		return bits >>> (int) (bit & 7) & plyMask;
+	}
+
+	/**
+	 * Method that fills an array with the columns of the current game.
+	 *
+	 * @param moves
+	 *            The array, which needs room for every ply
+	 * @return int How many plies were copied
+	 */
+	public int getColumns(final int[] moves) {
+		for (int i = 0; i < plies; i++) {
+			moves[i] = getColumn(i);
+		}
+		return plies;
+	}
+
+	/**
+	 * Helper method that maps the part of the file a range of bytes is in,
+	 * unless it is already mapped.
+	 *
+	 * @param offset
+	 *            Where in the file the range starts
+	 * @param length
+	 *            How many bytes the range has
+	 * @throws IOException
+	 *             If the file cannot be mapped
+	 */
+	private void ensure(final long offset, final int length)
+			throws IOException {
+		if (offset < windowStart
+				|| offset + length > windowStart + window.limit()) {
+			map(offset);
+		}
+	}
+
+	/**
+	 * Helper method that maps a window of the file.
+	 *
+	 * @param offset
+	 *            Where in the file the window starts
+	 * @throws IOException
+	 *             If the file cannot be mapped
+	 */
+	private void map(final long offset) throws IOException {
+		window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+				Math.min(WINDOW_BYTES, size - offset));
+		windowStart = offset;
+	}
+
+	/**
+	 * Getter method that returns the result of the current game.
+	 *
+	 * @return int One of the results of GameRecord
+	 */
+	public int getResult() {
+		return header & GameRecord.RESULT_MASK;
+	}
+
+	/**
+	 * Getter method that returns who moved first in the current game.
+	 *
+	 * @return Player The starting player
+	 */
+	public Player getStartingPlayer() {
+		return (header & GameRecord.SECOND_STARTED) != 0 ? Player.PLAYER2
+				: Player.PLAYER1;
+	}
+
+	/**
+	 * Getter method that returns how many plies the current game has.
+	 *
+	 * @return int The number of plies
+	 */
+	public int getPlies() {
+		return plies;
+	}
+
+	/**
+	 * Getter method that returns the number of rows of the board.
+	 *
+	 * @return int The number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Getter method that returns the number of columns of the board.
+	 *
+	 * @return int The number of columns
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 *
+	 * @return int The length of a winning row
+	 */
+	public int getConnect() {
+		return connect;
+	}
+
+	/**
+	 * Method that closes the file. The mapped windows stay valid until
+	 * they are garbage collected, but the reader cannot be used anymore.
+	 *
+	 * @throws IOException
+	 *             If the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,195 @@
+package connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class appends games to a stream in the format of GameRecord. Each
+ * game is packed into a reused buffer and written straight through, so any
+ * number of games can be archived without keeping them in memory. Every
+ * game written to one stream has to be played on the same board.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class GameRecordWriter implements Closeable {
+
+	/** The stream the games are written to. */
+	private final DataOutputStream out;
+
+	/** Number of rows of the board. */
+	private final int rows;
+
+	/** Number of columns of the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
+
+	/** How many bits each ply takes. */
+	private final int bitsPerPly;
+
+	/** The buffer each game is packed into. */
+	private byte[] buffer = new byte[64];
+
+	/** How many games have been written. */
+	private long games;
+
+	/**
+	 * Constructor that instantiates a new writer and writes the header of
+	 * the file.
+	 *
+	 * @param out
+	 *            The stream the games are written to
+	 * @param rows
+	 *            The number of rows of the board
+	 * @param cols
+	 *            The number of columns of the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @throws IOException
+	 *             If the header cannot be written
+	 */
+	public GameRecordWriter(final OutputStream out, final int rows,
+			final int cols, final int connect) throws IOException {
+		if (rows < 1 || rows > 0xFF || cols < 1 || cols > 0xFF
+				|| connect < 1 || connect > 0xFF) {
+			throw new IllegalArgumentException("A " + rows + "x" + cols
+					+ " connect " + connect + " board cannot be recorded");
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		this.bitsPerPly = GameRecord.getBitsPerPly(cols);
+		this.out.writeInt(GameRecord.MAGIC);
+		this.out.writeByte(GameRecord.VERSION);
+		this.out.writeByte(rows);
+		this.out.writeByte(cols);
+		this.out.writeByte(connect);
+	}
+
+	/**
+	 * Method that writes the moves and the result of a game.
+	 *
+	 * @param game
+	 *            The game, which has to be played on the board of the file
+	 * @throws IOException
+	 *             If the game cannot be written
+	 */
+	public void write(final ConnectFourGame game) throws IOException {
+		if (game.getRows() != rows || game.getCols() != cols
+				|| game.getConnect() != connect) {
+			throw new IllegalArgumentException("The game is not played on "
+					+ "the board of the file");
+		}
+		int[] history = game.getHistory();
+		Player winner = game.getGameStatus() == GameStatus.Won
+				? game.getPlayer().next() : Player.NONE;
+		write(game.getStartingPlayer(), GameRecord.getResult(game.getGameStatus(), winner),
+				history, history.length);
+	}
+
+	/**
+	 * Method that writes a game. Everything is checked before the first
+	 * byte is written, so a game that is rejected leaves nothing behind
+	 * in the stream.
+	 *
+	 * @param startingPlayer
+	 *            The player who moved first
+	 * @param result
+	 *            One of the results of GameRecord
+	 * @param moves
+	 *            The column of every ply, in order
+	 * @param plies
+	 *            How many plies of the moves were played
+	 * @throws IOException
+	 *             If the game cannot be written
+	 */
+	public void write(final Player startingPlayer, final int result,
+			final int[] moves, final int plies) throws IOException {
+		if ((result & ~GameRecord.RESULT_MASK) != 0) {
+			throw new IllegalArgumentException("Unknown result " + result);
+		}
+		if (startingPlayer != Player.PLAYER1
+				&& startingPlayer != Player.PLAYER2) {
+			throw new IllegalArgumentException("The starting player has to "
+					+ "be PLAYER1 or PLAYER2");
+		}
+		if (plies < 0 || plies > moves.length || plies > rows * cols) {
+			throw new IllegalArgumentException(plies + " plies cannot be "
+					+ "recorded from " + moves.length + " moves");
+		}
+		int bytes = (int) (((long) plies * bitsPerPly + 7) >>> 3);
+		if (buffer.length < bytes) {
+			buffer = new byte[Math.max(bytes, buffer.length * 2)];
+		}
+		int length = 0;
+		int bits = 0;
+		int pending = 0;
+		for (int i = 0; i < plies; i++) {
+			int col = moves[i];
+			if (col < 0 || col >= cols) {
+				throw new IllegalArgumentException("Column " + col
+						+ " is not on the board");
+			}
+			pending |= col << bits;
+			bits += bitsPerPly;
+			while (bits >= Byte.SIZE) {
+				buffer[length++] = (byte) pending;
+				pending >>>= Byte.SIZE;
+				bits -= Byte.SIZE;
+			}
+		}
+		if (bits > 0) {
+			buffer[length++] = (byte) pending;
+		}
+		int header = result;
+		if (startingPlayer == Player.PLAYER2) {
+			header |= GameRecord.SECOND_STARTED;
+		}
+		out.writeByte(header);
+		for (int value = plies; ; value >>>= 7) {
+			if ((value & ~0x7F) == 0) {
+				out.writeByte(value);
+				break;
+			}
+			out.writeByte(value & 0x7F | 0x80);
+		}
+		out.write(buffer, 0, length);
+		games++;
+	}
+
+	/**
+	 * Getter method that returns how many games have been written.
+	 *
+	 * @return long The number of games
+	 */
+	public long getGames() {
+		return games;
+	}
+
+	/**
+	 * Method that writes out every game that is still buffered.
+	 *
+	 * @throws IOException
+	 *             If the games cannot be written
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Method that writes out every buffered game and closes the stream.
+	 *
+	 * @throws IOException
+	 *             If the games cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
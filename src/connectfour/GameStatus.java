@@ -15,6 +15,12 @@ public enum GameStatus {
 	 */
 	Won,
 	
+	/**
+	 * The current status if the board is full and nobody won.
+	 * 
+	 */
+	Tie,
+	
 	/**
 	 * The current status if the game is not over yet.
 	 * 
@@ -0,0 +1,350 @@
+package connectfour;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class is a game board for boards that are too large for a Bitboard,
+ * such as the 20x20 connect five tournament board. The cells of each player
+ * are stored in an array of longs with the same column by column layout as
+ * Bitboard, continued over as many words as are needed.
+ *
+ * <p>
+ * Shifting a whole multi-word mask for every win check would cost time in
+ * proportion to the size of the board, so instead the board keeps a win
+ * index. When a piece is played only the run of pieces through that piece is
+ * counted in each of the four directions, which takes at most a few steps
+ * per direction no matter how large the board is. A piece that completes a
+ * winning row is flagged, and each player has a count of flagged pieces, so
+ * checking for a win is a single lookup and undoing a move only has to
+ * clear the flag of the piece that is removed.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class GridBoard implements Board {
+
+	/** Seed of the Zobrist keys, so equal boards always hash the same. */
+	private static final long ZOBRIST_SEED = 0x5EEDC0FFEEL;
+
+	/** The Zobrist keys of every board size, by its number of bits. */
+	private static final ConcurrentMap<Integer, long[]> ZOBRIST_KEYS =
+			new ConcurrentHashMap<Integer, long[]>();
+
+	/** Column and row steps of the four directions a row can run in. */
+	private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1},
+		{1, -1}};
+
+	/** Number of rows on the board. */
+	private final int rows;
+
+	/** Number of columns on the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
+
+	/** Number of bits used by one column, including the empty top bit. */
+	private final int height;
+
+	/** Number of bits used by the whole board. */
+	private final int bits;
+
+	/**
+	 * A random key for every bit of both players, used for hashing. It is
+	 * shared by every board of the same size and never changes.
+	 */
+	private final long[] zobrist;
+
+	/** Cells owned by the first player. */
+	private final long[] player1;
+
+	/** Cells owned by the second player. */
+	private final long[] player2;
+
+	/** Whether or not the piece on each bit completed a winning row. */
+	private final boolean[] winning;
+
+	/** How many pieces of each player completed a winning row. */
+	private final int[] wins = new int[2];
+
+	/** Number of pieces that have been dropped in each column. */
+	private final int[] heights;
+
+	/** Number of pieces on the board. */
+	private int moves;
+
+	/** Zobrist hash of the pieces on the board. */
+	private long hash;
+
+	/**
+	 * Constructor that instantiates a new empty board of the given size.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 */
+	public GridBoard(final int rows, final int cols, final int connect) {
+		if (rows < 1 || cols < 1 || cols >= TranspositionTable.NO_MOVE
+				|| (long) rows * cols > Negamax.MAX_CELLS) {
+			throw new IllegalArgumentException("A " + rows + "x" + cols
+					+ " board is not supported");
+		}
+		if (connect < 2) {
+			throw new IllegalArgumentException("At least two pieces in a row "
+					+ "must be needed to win");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		this.height = rows + 1;
+		this.bits = height * cols;
+		int words = (bits + Long.SIZE - 1) / Long.SIZE;
+		this.player1 = new long[words];
+		this.player2 = new long[words];
+		this.winning = new boolean[bits];
+		this.heights = new int[cols];
+		this.zobrist = ZOBRIST_KEYS.computeIfAbsent(bits,
+				GridBoard::createZobrist);
+	}
+
+	/**
+	 * Constructor that instantiates a new board with the same size and
+	 * pieces as a snapshot. The pieces are played again one row at a time
+	 * from the bottom up, so the heights, the hash and the win index are
+	 * all rebuilt.
+	 *
+	 * @param position
+	 *            The snapshot the board is created from
+	 */
+	public GridBoard(final Position position) {
+		this(position.getRows(), position.getCols(), position.getConnect());
+		for (int row = rows - 1; row >= 0; row--) {
+			for (int col = 0; col < cols; col++) {
+				Player owner = position.getOwner(row, col);
+				if (owner != Player.NONE) {
+					play(col, owner);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new board with the same size and
+	 * pieces as another board. The Zobrist keys are shared, since they
+	 * never change.
+	 *
+	 * @param other
+	 *            The board that is going to be copied
+	 */
+	private GridBoard(final GridBoard other) {
+		this.rows = other.rows;
+		this.cols = other.cols;
+		this.connect = other.connect;
+		this.height = other.height;
+		this.bits = other.bits;
+		this.zobrist = other.zobrist;
+		this.player1 = other.player1.clone();
+		this.player2 = other.player2.clone();
+		this.winning = other.winning.clone();
+		this.wins[0] = other.wins[0];
+		this.wins[1] = other.wins[1];
+		this.heights = other.heights.clone();
+		this.moves = other.moves;
+		this.hash = other.hash;
+	}
+
+	/**
+	 * Helper method that creates the Zobrist keys of a board size. They
+	 * come from a fixed seed, so every board of the size gets the same
+	 * keys.
+	 *
+	 * @param bits
+	 *            The number of bits the board uses
+	 * @return long[] A random key for every bit of both players
+	 */
+	private static long[] createZobrist(final int bits) {
+		long[] keys = new long[2 * bits];
+		Random random = new Random(ZOBRIST_SEED);
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+		}
+		return keys;
+	}
+
+	@Override
+	public GridBoard copy() {
+		return new GridBoard(this);
+	}
+
+	@Override
+	public Position snapshot() {
+		return new Position(rows, cols, connect, player1, player2);
+	}
+
+	@Override
+	public boolean canPlay(final int col) {
+		return heights[col] < rows;
+	}
+
+	@Override
+	public int play(final int col, final Player player) {
+		int index = col * height + heights[col];
+		long[] words = player == Player.PLAYER1 ? player1 : player2;
+		words[index >>> 6] |= 1L << index;
+		hash ^= zobrist[player == Player.PLAYER1 ? index : bits + index];
+		if (completesRow(words, col, heights[col])) {
+			winning[index] = true;
+			wins[player.ordinal()]++;
+		}
+		heights[col]++;
+		moves++;
+		return rows - heights[col];
+	}
+
+	@Override
+	public void undo(final int col) {
+		heights[col]--;
+		moves--;
+		int index = col * height + heights[col];
+		Player owner = isSet(player1, index) ? Player.PLAYER1
+				: Player.PLAYER2;
+		long[] words = owner == Player.PLAYER1 ? player1 : player2;
+		words[index >>> 6] &= ~(1L << index);
+		hash ^= zobrist[owner == Player.PLAYER1 ? index : bits + index];
+		if (winning[index]) {
+			winning[index] = false;
+			wins[owner.ordinal()]--;
+		}
+	}
+
+	/**
+	 * Helper method that checks if a piece that was just added is part of
+	 * a winning row. The pieces of the same player next to it are counted
+	 * in both directions along each line, stopping at the first cell that
+	 * is not theirs.
+	 *
+	 * @param words
+	 *            The cells of the player who owns the piece
+	 * @param col
+	 *            The column of the piece
+	 * @param level
+	 *            How high up its column the piece is, counting from the
+	 *            bottom
+	 * @return boolean If the piece is part of enough pieces in a row
+	 */
+	private boolean completesRow(final long[] words, final int col,
+			final int level) {
+		for (int[] direction : DIRECTIONS) {
+			int run = 1 + countRun(words, col, level, direction[0],
+					direction[1])
+					+ countRun(words, col, level, -direction[0],
+							-direction[1]);
+			if (run >= connect) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method that counts the pieces of a player in a row starting
+	 * next to a cell and going in one direction.
+	 *
+	 * @param words
+	 *            The cells of the player
+	 * @param col
+	 *            The column of the cell
+	 * @param level
+	 *            How high up its column the cell is
+	 * @param colStep
+	 *            How far each step moves across
+	 * @param levelStep
+	 *            How far each step moves up
+	 * @return int How many pieces in a row were found, at most one less
+	 *         than a winning row
+	 */
+	private int countRun(final long[] words, final int col, final int level,
+			final int colStep, final int levelStep) {
+		int count = 0;
+		int c = col + colStep;
+		int l = level + levelStep;
+		while (count < connect - 1 && c >= 0 && c < cols && l >= 0
+				&& l < rows && isSet(words, c * height + l)) {
+			count++;
+			c += colStep;
+			l += levelStep;
+		}
+		return count;
+	}
+
+	/**
+	 * Helper method that checks if a bit is set in an array of words.
+	 *
+	 * @param words
+	 *            The words
+	 * @param index
+	 *            The index of the bit
+	 * @return boolean If the bit is set
+	 */
+	private static boolean isSet(final long[] words, final int index) {
+		return (words[index >>> 6] & 1L << index) != 0;
+	}
+
+	@Override
+	public boolean hasWon(final Player player) {
+		return wins[player.ordinal()] > 0;
+	}
+
+	@Override
+	public Player getOwner(final int row, final int col) {
+		int index = col * height + rows - 1 - row;
+		if (isSet(player1, index)) {
+			return Player.PLAYER1;
+		}
+		if (isSet(player2, index)) {
+			return Player.PLAYER2;
+		}
+		return Player.NONE;
+	}
+
+	@Override
+	public long getHash() {
+		return hash;
+	}
+
+	@Override
+	public int getHeight(final int col) {
+		return heights[col];
+	}
+
+	@Override
+	public int getMoves() {
+		return moves;
+	}
+
+	@Override
+	public boolean isFull() {
+		return moves == rows * cols;
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getCols() {
+		return cols;
+	}
+
+	@Override
+	public int getConnect() {
+		return connect;
+	}
+}
@@ -0,0 +1,164 @@
+package connectfour;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts how long operations take, in the same way as an HDR
+ * histogram: every power of two is split into a fixed number of buckets,
+ * so each latency is kept to within about two percent no matter how small
+ * or large it is. Recording a latency only increments a few counters and
+ * never allocates, and any number of threads may record at once.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+	/** How many bits of each latency below its highest bit are kept. */
+	private static final int SUB_BUCKET_BITS = 6;
+
+	/** How many buckets each power of two is split into. */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** The highest bit of the longest latency that is told apart. */
+	private static final int MAX_BIT = 40;
+
+	/** How many times a latency fell in each bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(
+			SUB_BUCKETS * (MAX_BIT - SUB_BUCKET_BITS + 2));
+
+	/** How many latencies were recorded. */
+	private final LongAdder count = new LongAdder();
+
+	/** The sum of every latency that was recorded. */
+	private final LongAdder total = new LongAdder();
+
+	/** The longest latency that was recorded. */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Method that records how long an operation took.
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds
+	 */
+	public void record(final long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(getIndex(value));
+		count.increment();
+		total.add(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * Getter method that returns the latency that a share of the recorded
+	 * latencies were at most.
+	 *
+	 * @param percentile
+	 *            The share, between 0 and 100
+	 * @return long The latency in nanoseconds, or zero if nothing was
+	 *         recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		long recorded = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			recorded += counts.get(i);
+		}
+		long target = Math.max(1, (long) Math.ceil(
+				Math.min(percentile, 100) / 100 * recorded));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(getHighestValue(i), max.get());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Getter method that returns how many latencies were recorded.
+	 *
+	 * @return long The number of latencies
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Getter method that returns the average recorded latency.
+	 *
+	 * @return double The average in nanoseconds, or zero if nothing was
+	 *         recorded
+	 */
+	public double getMean() {
+		long recorded = count.sum();
+		return recorded == 0 ? 0 : (double) total.sum() / recorded;
+	}
+
+	/**
+	 * Getter method that returns the longest recorded latency.
+	 *
+	 * @return long The latency in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Method that forgets every recorded latency. Latencies that are
+	 * recorded while this runs may be kept in part.
+	 *
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Helper method that works out the bucket of a latency. Latencies
+	 * below SUB_BUCKETS have a bucket each, and every power of two above
+	 * is split by the bits right below its highest bit.
+	 *
+	 * @param value
+	 *            The latency in nanoseconds
+	 * @return int The index of the bucket
+	 */
+	private static int getIndex(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int bit = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_BIT);
+		int shift = bit - SUB_BUCKET_BITS;
+		int sub = (int) Math.min(value >>> shift, 2 * SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub - SUB_BUCKETS;
+	}
+
+	/**
+	 * Helper method that works out the highest latency a bucket holds.
+	 *
+	 * @param index
+	 *            The index of the bucket
+	 * @return long The latency in nanoseconds
+	 */
+	private static long getHighestValue(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+		if (shift + SUB_BUCKET_BITS >= MAX_BIT
+				&& sub == 2 * SUB_BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return ((sub + 1) << shift) - 1;
+	}
+}
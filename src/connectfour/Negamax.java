@@ -0,0 +1,906 @@
+package connectfour;
+
+/**
+ * This class is the game tree search used by the AI. It is a depth-limited
+ * negamax search with alpha-beta pruning, which means every position is
+ * scored from the point of view of the player whose turn it is and the score
+ * of a child position is the negative of the score of its parent. The search
+ * is run with iterative deepening: it searches one ply deep, then two, and so
+ * on until it reaches its maximum depth or its time budget runs out, and the
+ * move of the deepest search that finished is played. Positions that have
+ * already been searched are remembered in a transposition table. Moves are
+ * searched best-guess first (the table move, then killer moves, then by
+ * history score, then closest to the center) so that alpha-beta can cut off
+ * the rest of the moves as early as possible. Positions the search stops at
+ * before the end of the game score 0 unless an Evaluator is set, which is
+ * told about every move so it can score the leaves incrementally. Killer
+ * moves and the history heuristic can be switched off, since they only pay
+ * for themselves when the leaves are scored by more than wins and losses.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class Negamax {
+
+	/** Score of a win on the very next move. Later wins score less. */
+	public static final int WIN_SCORE = 10000;
+
+	/** Most cells a board may have, so wins always outscore the rest. */
+	public static final int MAX_CELLS = 4096;
+
+	/** How many nodes are searched between two checks of the clock. */
+	private static final int CLOCK_INTERVAL = 1023;
+
+	/** Longest time budget in milliseconds whose deadline cannot overflow. */
+	private static final long MAX_TIME_LIMIT = Long.MAX_VALUE / 4000000L;
+
+	/** Scores above this are wins that are a number of plies away. */
+	private static final int WIN_THRESHOLD = WIN_SCORE - MAX_CELLS - 1;
+
+	/** Hash key of the second player being the one to move. */
+	private static final long PLAYER2_KEY = 0x9E3779B97F4A7C15L;
+
+	/** Multiplier that spreads the size of a board over a whole key. */
+	private static final long BOARD_KEY_MULTIPLIER = 0xFF51AFD7ED558CCDL;
+
+	/** Number of low bits of a packed move that hold its column. */
+	private static final int COLUMN_BITS = 8;
+
+	/** Mask that takes the column out of a packed move. */
+	private static final int COLUMN_MASK = (1 << COLUMN_BITS) - 1;
+
+	/** Ordering score of the move stored in the transposition table. */
+	private static final int TABLE_MOVE_ORDER = 1 << 22;
+
+	/** Ordering score of the first killer move of a ply. */
+	private static final int KILLER_ORDER = 1 << 21;
+
+	/** History scores are halved once they grow past this value. */
+	private static final int HISTORY_LIMIT = 1 << 20;
+
+	/** How many plies the search looks ahead. */
+	private int maxDepth;
+
+	/** How many milliseconds the search is allowed to take. */
+	private long timeLimit;
+
+	/** The System.nanoTime() at which the current search has to stop. */
+	private long deadline;
+
+	/**
+	 * Hash key of the size of the board being searched and how many
+	 * pieces in a row win on it. Board hashes only depend on which bits
+	 * are set, so this keeps positions of different games that share a
+	 * table from finding each other's entries.
+	 */
+	private long boardKey;
+
+	/** Whether or not the current search ran out of time. */
+	private boolean timeUp;
+
+	/** Set by another thread to make the current search stop early. */
+	private volatile boolean stopped;
+
+	/** How many places the root moves are rotated before searching. */
+	private int rootRotation;
+
+	/** Whether or not this search helps another search on another thread. */
+	private boolean helper;
+
+	/** Whether or not each search ages the transposition table. */
+	private boolean agingTable = true;
+
+	/** How many positions the last search visited. */
+	private long nodes;
+
+	/** The deepest iteration of the last search that finished. */
+	private int completedDepth;
+
+	/** How many lookups of the last search found their position. */
+	private long tableHits;
+
+	/** How many lookups of the last search did not find their position. */
+	private long tableMisses;
+
+	/** How many positions of the last search had a beta cutoff. */
+	private long cutoffs;
+
+	/** How many of those cutoffs came from the first move searched. */
+	private long firstMoveCutoffs;
+
+	/** Results of positions that have already been searched, or null. */
+	private TranspositionTable table;
+
+	/** Scores the positions the search stops at, or null to score 0. */
+	private Evaluator evaluator;
+
+	/** The columns of the board, ordered from the center outward. */
+	private int[] columnOrder = new int[0];
+
+	/** Two moves per ply that recently caused a cutoff at that ply. */
+	private int[][] killers = new int[0][2];
+
+	/** How often each column caused a cutoff, for each player. */
+	private int[][] history = new int[2][0];
+
+	/**
+	 * One move buffer per ply, reused by every position at that ply. Each
+	 * entry holds a column, and once the moves are ordered also the
+	 * ordering score of the column in the bits above it. The buffers grow
+	 * when a search needs more plies or a wider board than before.
+	 */
+	private int[][] moveBuffer = new int[0][0];
+
+	/** The column of the best move of the last root iteration. */
+	private int rootCol;
+
+	/** Whether or not killer moves are tried early. */
+	private boolean killerMoves;
+
+	/** Whether or not moves are ordered by their history score. */
+	private boolean historyHeuristic;
+
+	/**
+	 * Constructor that instantiates a new search with a depth and a time
+	 * budget.
+	 *
+	 * @param maxDepth
+	 *            How many plies the search looks ahead
+	 * @param timeLimit
+	 *            How many milliseconds the search is allowed to take
+	 */
+	public Negamax(final int maxDepth, final long timeLimit) {
+		setMaxDepth(maxDepth);
+		setTimeLimit(timeLimit);
+	}
+
+	/**
+	 * Method that searches for the best move of a player. The search is
+	 * deepened one ply at a time and always returns before its time
+	 * budget runs out, with the best move of the deepest iteration that
+	 * finished. The board is left the way it was found once the search
+	 * returns. This is the only place the search creates a Move.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param player
+	 *            Whose turn it is
+	 * @return Move The best move found, rated from the point of view of
+	 *         the player, or null if there are no moves left
+	 */
+	public Move search(final Board board, final Player player) {
+		nodes = 0;
+		completedDepth = 0;
+		tableHits = 0;
+		tableMisses = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+		timeUp = false;
+		deadline = System.nanoTime()
+				+ Math.min(timeLimit, MAX_TIME_LIMIT) * 1000000L;
+		if (table != null && !helper && agingTable) {
+			table.newSearch();
+		}
+		if (evaluator != null) {
+			evaluator.reset(board);
+		}
+		boardKey = getBoardKey(board);
+		int remaining = board.getRows() * board.getCols() - board.getMoves();
+		prepareOrdering(board.getCols(), Math.min(maxDepth, remaining) + 1);
+
+		int[] moves = moveBuffer[0];
+		int count = generateMoves(board, moves);
+		if (count == 0) {
+			return null;
+		}
+		for (int i = 0; i < count; i++) {
+			if (isWinningMove(board, moves[i], player)) {
+				completedDepth = 1;
+				return toMove(board, moves[i], player, WIN_SCORE - 1);
+			}
+		}
+
+		rotate(moves, count, rootRotation);
+		int bestCol = moves[0];
+		int bestScore = 0;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			Object event = FlightEvents.begin(FlightEvents.SEARCH_ITERATION);
+			int score = searchRoot(board, player, count, depth);
+			if (timeUp) {
+				break;
+			}
+			if (event != null) {
+				FlightEvents.commit(event, board.getHash(), depth, nodes,
+						score);
+			}
+			bestCol = rootCol;
+			bestScore = score;
+			completedDepth = depth;
+			moveToFront(moves, count, bestCol);
+			if (Math.abs(score) > WIN_THRESHOLD
+					|| depth >= remaining) {
+				break;
+			}
+		}
+		return toMove(board, bestCol, player, bestScore);
+	}
+
+	/**
+	 * Helper method that runs one iteration of the search from the root.
+	 * The moves are searched in the order they are stored in the buffer
+	 * of the root, so the best move of the previous iteration is searched
+	 * first. The column of the best move is left in rootCol.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param player
+	 *            Whose turn it is
+	 * @param count
+	 *            How many moves can be made from the root
+	 * @param depth
+	 *            How many plies to look ahead
+	 * @return int The score of the best move, which is only complete if
+	 *         the search did not run out of time
+	 */
+	private int searchRoot(final Board board, final Player player,
+			final int count, final int depth) {
+		int[] moves = moveBuffer[0];
+		int alpha = -WIN_SCORE;
+		for (int i = 0; i < count; i++) {
+			int col = moves[i];
+			play(board, col, player);
+			int score = -negamax(board, player.next(), depth - 1, 1,
+					-WIN_SCORE, -alpha);
+			undo(board, col, player);
+			if (timeUp) {
+				return alpha;
+			}
+			if (i == 0 || score > alpha) {
+				alpha = score;
+				rootCol = col;
+			}
+		}
+		return alpha;
+	}
+
+	/**
+	 * Helper method that scores a position with a negamax search. A
+	 * score that is at least beta means the opponent will avoid this
+	 * position, so the rest of the moves do not have to be searched.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param player
+	 *            Whose turn it is
+	 * @param depth
+	 *            How many more plies to look ahead
+	 * @param ply
+	 *            How many plies away from the root the position is
+	 * @param alpha
+	 *            The score the player is already guaranteed
+	 * @param beta
+	 *            The score the opponent is already guaranteed
+	 * @return int The score of the position for the player
+	 */
+	private int negamax(final Board board, final Player player,
+			final int depth, final int ply, int alpha, final int beta) {
+		nodes++;
+		if ((nodes & CLOCK_INTERVAL) == 0
+				&& (stopped || System.nanoTime() - deadline >= 0)) {
+			timeUp = true;
+		}
+		if (timeUp || board.isFull()) {
+			return 0;
+		}
+
+		int[] moves = moveBuffer[ply];
+		int count = generateMoves(board, moves);
+		for (int i = 0; i < count; i++) {
+			if (isWinningMove(board, moves[i], player)) {
+				return WIN_SCORE - ply - 1;
+			}
+		}
+		if (depth <= 0) {
+			return evaluator == null ? 0 : evaluator.evaluate(board, player);
+		}
+
+		long key = 0;
+		int tableMove = TranspositionTable.NO_MOVE;
+		if (table != null) {
+			key = board.getHash() ^ boardKey
+					^ (player == Player.PLAYER2 ? PLAYER2_KEY : 0);
+			long entry = table.probe(key);
+			if (entry == 0) {
+				tableMisses++;
+			} else {
+				tableHits++;
+				tableMove = TranspositionTable.getMove(entry);
+				if (TranspositionTable.getDepth(entry) >= depth) {
+					int score = fromTable(TranspositionTable.getScore(entry), ply);
+					int bound = TranspositionTable.getBound(entry);
+					if (bound == TranspositionTable.EXACT
+							|| (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+							|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+						return score;
+					}
+				}
+			}
+		}
+
+		int alphaStart = alpha;
+		int best = -WIN_SCORE;
+		int bestCol = TranspositionTable.NO_MOVE;
+		orderMoves(moves, count, player, ply, tableMove);
+		for (int i = 0; i < count; i++) {
+			int col = moves[i] & COLUMN_MASK;
+			play(board, col, player);
+			int score = -negamax(board, player.next(), depth - 1, ply + 1,
+					-beta, -alpha);
+			undo(board, col, player);
+			if (timeUp) {
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestCol = col;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (alpha >= beta) {
+				cutoffs++;
+				if (i == 0) {
+					firstMoveCutoffs++;
+				}
+				addCutoff(player, col, depth, ply);
+				break;
+			}
+		}
+
+		if (table != null) {
+			int bound = TranspositionTable.EXACT;
+			if (best <= alphaStart) {
+				bound = TranspositionTable.UPPER_BOUND;
+			} else if (best >= beta) {
+				bound = TranspositionTable.LOWER_BOUND;
+			}
+			table.store(key, toTable(best, ply), depth, bound, bestCol);
+		}
+		return best;
+	}
+
+	/**
+	 * Helper method that drops a piece and tells the evaluator about it.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @param player
+	 *            The player who owns the piece
+	 */
+	private void play(final Board board, final int col, final Player player) {
+		board.play(col, player);
+		if (evaluator != null) {
+			evaluator.played(board, col, player);
+		}
+	}
+
+	/**
+	 * Helper method that takes a piece back and tells the evaluator about
+	 * it.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param col
+	 *            The column the piece is taken from
+	 * @param player
+	 *            The player who owns the piece
+	 */
+	private void undo(final Board board, final int col, final Player player) {
+		if (evaluator != null) {
+			evaluator.undone(board, col, player);
+		}
+		board.undo(col);
+	}
+
+	/**
+	 * Helper method that works out the hash key of the size of a board and
+	 * how many pieces in a row win on it. Every different size and win
+	 * condition gets a different key.
+	 *
+	 * @param board
+	 *            The board
+	 * @return long The key of the board size
+	 */
+	private static long getBoardKey(final Board board) {
+		long size = board.getRows() | (long) board.getCols() << 16
+				| (long) board.getConnect() << 32;
+		long key = (size ^ (size >>> 33)) * BOARD_KEY_MULTIPLIER;
+		return key ^ (key >>> 33);
+	}
+
+	/**
+	 * Helper method that converts a score so it can be stored in the
+	 * transposition table. Win scores depend on how far from the root a
+	 * position is, so they are stored as the distance from the position
+	 * itself instead.
+	 *
+	 * @param score
+	 *            The score measured from the root
+	 * @param ply
+	 *            How many plies away from the root the position is
+	 * @return int The score measured from the position
+	 */
+	private static int toTable(final int score, final int ply) {
+		if (score > WIN_THRESHOLD) {
+			return score + ply;
+		}
+		if (score < -WIN_THRESHOLD) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Helper method that converts a score read from the transposition
+	 * table back into a score measured from the root.
+	 *
+	 * @param score
+	 *            The score measured from the position
+	 * @param ply
+	 *            How many plies away from the root the position is
+	 * @return int The score measured from the root
+	 */
+	private static int fromTable(final int score, final int ply) {
+		if (score > WIN_THRESHOLD) {
+			return score - ply;
+		}
+		if (score < -WIN_THRESHOLD) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * Helper method that gets the move ordering ready for a new search.
+	 * The center-first column order and the history scores are only
+	 * rebuilt when the width of the board changes, the buffers only grow
+	 * when more plies are needed, killer moves are forgotten, and history
+	 * scores are halved so that older searches count for less.
+	 *
+	 * @param cols
+	 *            The number of columns of the board
+	 * @param plies
+	 *            How many plies the search can reach, counting the root
+	 */
+	private void prepareOrdering(final int cols, final int plies) {
+		if (columnOrder.length != cols) {
+			columnOrder = new int[cols];
+			for (int i = 0; i < cols; i++) {
+				columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+			}
+			history = new int[2][cols];
+		}
+		if (moveBuffer.length < plies || moveBuffer[0].length < cols) {
+			moveBuffer = new int[Math.max(plies, moveBuffer.length)][cols];
+			killers = new int[moveBuffer.length][2];
+		}
+		for (int[] killer : killers) {
+			killer[0] = TranspositionTable.NO_MOVE;
+			killer[1] = TranspositionTable.NO_MOVE;
+		}
+		for (int[] scores : history) {
+			for (int col = 0; col < scores.length; col++) {
+				scores[col] >>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that sorts the moves of a position so the moves that
+	 * are most likely to cause a cutoff come first. Each column in the
+	 * buffer is packed together with its ordering score above the column
+	 * bits, and the buffer is sorted in place. The sort is stable, so
+	 * moves that score the same stay in their center-first order.
+	 *
+	 * @param moves
+	 *            The move buffer of the ply
+	 * @param count
+	 *            How many moves are in the buffer
+	 * @param player
+	 *            Whose turn it is
+	 * @param ply
+	 *            How many plies away from the root the position is
+	 * @param tableMove
+	 *            The best move stored in the transposition table
+	 */
+	private void orderMoves(final int[] moves, final int count,
+			final Player player, final int ply, final int tableMove) {
+		int[] scoresByCol = history[player.ordinal()];
+		for (int i = 0; i < count; i++) {
+			int col = moves[i];
+			int score = 0;
+			if (col == tableMove) {
+				score = TABLE_MOVE_ORDER;
+			} else if (killerMoves && col == killers[ply][0]) {
+				score = KILLER_ORDER;
+			} else if (killerMoves && col == killers[ply][1]) {
+				score = KILLER_ORDER - 1;
+			} else if (historyHeuristic) {
+				score = scoresByCol[col];
+			}
+			moves[i] = score << COLUMN_BITS | col;
+		}
+		for (int i = 1; i < count; i++) {
+			int move = moves[i];
+			int j = i - 1;
+			while (j >= 0 && moves[j] >>> COLUMN_BITS < move >>> COLUMN_BITS) {
+				moves[j + 1] = moves[j];
+				j--;
+			}
+			moves[j + 1] = move;
+		}
+	}
+
+	/**
+	 * Helper method that remembers a move that caused a cutoff, both as a
+	 * killer move for its ply and in the history of its player.
+	 *
+	 * @param player
+	 *            Whose turn it is
+	 * @param col
+	 *            The column of the move
+	 * @param depth
+	 *            How many plies were left to search
+	 * @param ply
+	 *            How many plies away from the root the position is
+	 */
+	private void addCutoff(final Player player, final int col,
+			final int depth, final int ply) {
+		if (killers[ply][0] != col) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = col;
+		}
+		int[] scores = history[player.ordinal()];
+		scores[col] += depth * depth;
+		if (scores[col] > HISTORY_LIMIT) {
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] >>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that fills a move buffer with every column that is
+	 * not full. The columns are added from the center of the board
+	 * outward, since center columns take part in the most rows of four.
+	 *
+	 * @param board
+	 *            The position the moves are made on
+	 * @param moves
+	 *            The move buffer that is filled
+	 * @return int How many moves were added to the buffer
+	 */
+	private int generateMoves(final Board board, final int[] moves) {
+		int count = 0;
+		for (int col : columnOrder) {
+			if (board.canPlay(col)) {
+				moves[count++] = col;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Helper method that checks if a move wins on the spot by making it,
+	 * checking for a win and undoing it again.
+	 *
+	 * @param board
+	 *            The position the move is made on
+	 * @param col
+	 *            The column of the move
+	 * @param player
+	 *            Whose turn it is
+	 * @return boolean If the move gives the player four in a row
+	 */
+	private static boolean isWinningMove(final Board board, final int col,
+			final Player player) {
+		board.play(col, player);
+		boolean win = board.hasWon(player);
+		board.undo(col);
+		return win;
+	}
+
+	/**
+	 * Helper method that moves a column to the front of a move buffer,
+	 * keeping the rest of the columns in the same order.
+	 *
+	 * @param moves
+	 *            The move buffer
+	 * @param count
+	 *            How many moves are in the buffer
+	 * @param col
+	 *            The column that is moved to the front
+	 */
+	private static void moveToFront(final int[] moves, final int count,
+			final int col) {
+		int i = 0;
+		while (i < count && moves[i] != col) {
+			i++;
+		}
+		for (; i > 0; i--) {
+			moves[i] = moves[i - 1];
+		}
+		moves[0] = col;
+	}
+
+	/**
+	 * Helper method that rotates the moves of a buffer to the left, so
+	 * that searches running side by side start with different moves.
+	 *
+	 * @param moves
+	 *            The move buffer
+	 * @param count
+	 *            How many moves are in the buffer
+	 * @param places
+	 *            How many places the moves are rotated
+	 */
+	private static void rotate(final int[] moves, final int count,
+			final int places) {
+		for (int n = places % count; n > 0; n--) {
+			int first = moves[0];
+			System.arraycopy(moves, 1, moves, 0, count - 1);
+			moves[count - 1] = first;
+		}
+	}
+
+	/**
+	 * Setter method that asks a search running on another thread to stop,
+	 * or allows searches to run again. A stopped search returns the best
+	 * move of the deepest iteration it finished, just like when its time
+	 * runs out. Searches stay stopped until this is set back to false, so
+	 * a stop that arrives before a search starts is not lost.
+	 *
+	 * @param stopped
+	 *            If searches should stop
+	 */
+	public void setStopped(final boolean stopped) {
+		this.stopped = stopped;
+	}
+
+	/**
+	 * Helper method that turns the result of a search into a Move.
+	 *
+	 * @param board
+	 *            The position that was searched
+	 * @param col
+	 *            The column of the move
+	 * @param player
+	 *            Whose turn it is
+	 * @param score
+	 *            The score of the move
+	 * @return Move The move with its row, column and rating
+	 */
+	private static Move toMove(final Board board, final int col,
+			final Player player, final int score) {
+		Move move = new Move(board.getRows() - 1 - board.getHeight(col),
+				col, player);
+		move.setRating(score);
+		return move;
+	}
+
+	/**
+	 * Getter method that returns how many plies the search looks ahead.
+	 *
+	 * @return int The depth of the search
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Setter method that sets how many plies the search looks ahead.
+	 *
+	 * @param maxDepth
+	 *            The depth of the search
+	 */
+	public void setMaxDepth(final int maxDepth) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Getter method that returns how long the search is allowed to take.
+	 *
+	 * @return long The time budget in milliseconds
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Setter method that sets how long the search is allowed to take.
+	 *
+	 * @param timeLimit
+	 *            The time budget in milliseconds
+	 */
+	public void setTimeLimit(final long timeLimit) {
+		if (timeLimit < 1) {
+			throw new IllegalArgumentException("Time limit must be positive");
+		}
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Getter method that returns the transposition table of the search.
+	 *
+	 * @return TranspositionTable The table, or null if there is none
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	/**
+	 * Setter method that sets the transposition table of the search.
+	 *
+	 * @param table
+	 *            The table, or null to search without one
+	 */
+	public void setTranspositionTable(final TranspositionTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Getter method that returns the evaluator that scores the positions
+	 * the search stops at.
+	 *
+	 * @return Evaluator The evaluator, or null if they all score 0
+	 */
+	public Evaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Setter method that sets the evaluator that scores the positions the
+	 * search stops at. Without one, only wins and losses are told apart.
+	 *
+	 * @param evaluator
+	 *            The evaluator, which this search must not share, or null
+	 */
+	public void setEvaluator(final Evaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Getter method that returns whether or not killer moves are tried
+	 * early.
+	 *
+	 * @return boolean If killer moves are used
+	 */
+	public boolean isKillerMoves() {
+		return killerMoves;
+	}
+
+	/**
+	 * Setter method that sets whether or not killer moves are tried
+	 * early.
+	 *
+	 * @param killerMoves
+	 *            If killer moves are used
+	 */
+	public void setKillerMoves(final boolean killerMoves) {
+		this.killerMoves = killerMoves;
+	}
+
+	/**
+	 * Getter method that returns whether or not moves are ordered by
+	 * their history score.
+	 *
+	 * @return boolean If the history heuristic is used
+	 */
+	public boolean isHistoryHeuristic() {
+		return historyHeuristic;
+	}
+
+	/**
+	 * Setter method that sets whether or not moves are ordered by their
+	 * history score.
+	 *
+	 * @param historyHeuristic
+	 *            If the history heuristic is used
+	 */
+	public void setHistoryHeuristic(final boolean historyHeuristic) {
+		this.historyHeuristic = historyHeuristic;
+	}
+
+	/**
+	 * Getter method that returns the deepest iteration of the last search
+	 * that finished before the time budget ran out.
+	 *
+	 * @return int The depth the best move was found at
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Setter method that turns this search into a helper of a search on
+	 * another thread. A helper rotates its root moves so it starts on a
+	 * different move than the other threads, and leaves aging the shared
+	 * transposition table to the main search.
+	 *
+	 * @param index
+	 *            The number of the helper, starting at one
+	 */
+	void setHelper(final int index) {
+		this.helper = true;
+		this.rootRotation = index;
+	}
+
+	/**
+	 * Setter method that sets whether or not each search ages the
+	 * transposition table. Searches that share one table over many
+	 * unrelated positions leave the aging to the owner of the table, so
+	 * the deep entries of earlier positions are not given up first.
+	 *
+	 * @param agingTable
+	 *            If each search ages the table
+	 */
+	void setAgingTable(final boolean agingTable) {
+		this.agingTable = agingTable;
+	}
+
+	/**
+	 * Getter method that returns how many transposition table lookups of
+	 * the last search found their position.
+	 *
+	 * @return long The number of table hits
+	 */
+	public long getTableHits() {
+		return tableHits;
+	}
+
+	/**
+	 * Getter method that returns how many transposition table lookups of
+	 * the last search did not find their position.
+	 *
+	 * @return long The number of table misses
+	 */
+	public long getTableMisses() {
+		return tableMisses;
+	}
+
+	/**
+	 * Getter method that returns how many positions of the last search
+	 * were cut off before all of their moves were searched.
+	 *
+	 * @return long The number of beta cutoffs
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Getter method that returns how many beta cutoffs of the last search
+	 * came from the first move that was searched, which is how often the
+	 * move ordering put the best move first.
+	 *
+	 * @return long The number of cutoffs on the first move
+	 */
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * Getter method that returns how many positions the last search
+	 * visited.
+	 *
+	 * @return long The number of nodes searched
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+}
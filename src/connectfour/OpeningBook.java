@@ -0,0 +1,276 @@
+package connectfour;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the best moves of early game positions that were solved
+ * ahead of time by OpeningBookBuilder. The book file is memory-mapped rather
+ * than read into the heap, and every book that is opened is cached by its
+ * path, so any number of games in one process share a single copy.
+ *
+ * <p>
+ * The file starts with a 16 byte header (a magic number, the version, the
+ * size of the board and the number of entries) followed by the entries. An
+ * entry is one long: the key of a position in the high bits, and the best
+ * column and the result of that position in the low eight bits. The entries
+ * are sorted by key so they can be binary searched. A position and its
+ * mirror image share one entry.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class OpeningBook {
+
+	/** Magic number at the start of every book file. */
+	static final int MAGIC = 0x43344B42;
+
+	/** Version of the file format. */
+	static final int VERSION = 1;
+
+	/** Size of the header in bytes. */
+	static final int HEADER_BYTES = 16;
+
+	/** Number of low bits of an entry that hold the move and result. */
+	static final int PAYLOAD_BITS = 8;
+
+	/** Result of a position that the player to move wins. */
+	public static final int WIN = 2;
+
+	/** Result of a position that ends in a draw. */
+	public static final int DRAW = 1;
+
+	/** Result of a position that the player to move loses. */
+	public static final int LOSS = 0;
+
+	/** Every book that has been opened, so each file is mapped once. */
+	private static final ConcurrentMap<Path, OpeningBook> BOOKS =
+			new ConcurrentHashMap<Path, OpeningBook>();
+
+	/** Number of rows of the board the book was built for. */
+	private final int rows;
+
+	/** Number of columns of the board the book was built for. */
+	private final int cols;
+
+	/** The sorted entries of the book. */
+	private final LongBuffer entries;
+
+	/**
+	 * Constructor that instantiates a book over mapped entries.
+	 *
+	 * @param rows
+	 *            The number of rows of the board
+	 * @param cols
+	 *            The number of columns of the board
+	 * @param entries
+	 *            The sorted entries of the book
+	 */
+	private OpeningBook(final int rows, final int cols,
+			final LongBuffer entries) {
+		this.rows = rows;
+		this.cols = cols;
+		this.entries = entries;
+	}
+
+	/**
+	 * Method that opens a book file, or returns the book that was already
+	 * opened from the same file.
+	 *
+	 * @param path
+	 *            The book file
+	 * @return OpeningBook The book
+	 * @throws IOException
+	 *             If the file cannot be read or is not a book
+	 */
+	public static OpeningBook open(final Path path) throws IOException {
+		Path key = path.toAbsolutePath().normalize();
+		OpeningBook book = BOOKS.get(key);
+		if (book == null) {
+			book = map(key);
+			OpeningBook existing = BOOKS.putIfAbsent(key, book);
+			if (existing != null) {
+				book = existing;
+			}
+		}
+		return book;
+	}
+
+	/**
+	 * Helper method that maps a book file into memory and checks its
+	 * header.
+	 *
+	 * @param path
+	 *            The book file
+	 * @return OpeningBook The book
+	 * @throws IOException
+	 *             If the file cannot be read or is not a book
+	 */
+	private static OpeningBook map(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+					|| buffer.getShort(4) != VERSION) {
+				throw new IOException(path + " is not an opening book");
+			}
+			int rows = buffer.get(6);
+			int cols = buffer.get(7);
+			int count = buffer.getInt(8);
+			if (HEADER_BYTES + (long) count * Long.BYTES > buffer.limit()) {
+				throw new IOException(path + " is truncated");
+			}
+			buffer.position(HEADER_BYTES);
+			buffer.limit(HEADER_BYTES + count * Long.BYTES);
+			return new OpeningBook(rows, cols, buffer.slice().asLongBuffer());
+		}
+	}
+
+	/**
+	 * Method that looks up the best move of a position. Books are only
+	 * built for connect four, so other games are never found.
+	 *
+	 * @param board
+	 *            The position
+	 * @param player
+	 *            Whose turn it is
+	 * @return int The packed move and result, which getColumn and getResult
+	 *         take apart, or -1 if the position is not in the book
+	 */
+	public int probe(final Board board, final Player player) {
+		if (!(board instanceof Bitboard) || board.getRows() != rows
+				|| board.getCols() != cols
+				|| board.getConnect() != Bitboard.CONNECT_FOUR) {
+			return -1;
+		}
+		Bitboard bitboard = (Bitboard) board;
+		long current = bitboard.getMask(player);
+		long occupied = current | bitboard.getMask(player.next());
+		long key = getKey(current, occupied);
+		long mirror = getKey(mirror(current, rows, cols),
+				mirror(occupied, rows, cols));
+		boolean mirrored = mirror < key;
+		int payload = find(mirrored ? mirror : key);
+		if (payload < 0) {
+			return -1;
+		}
+		if (mirrored) {
+			int col = cols - 1 - getColumn(payload);
+			payload = pack(col, getResult(payload));
+		}
+		return payload;
+	}
+
+	/**
+	 * Helper method that binary searches the entries for a key.
+	 *
+	 * @param key
+	 *            The key of the position
+	 * @return int The payload of the entry, or -1 if it is not found
+	 */
+	private int find(final long key) {
+		int low = 0;
+		int high = entries.limit() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long entryKey = entries.get(mid) >>> PAYLOAD_BITS;
+			if (entryKey < key) {
+				low = mid + 1;
+			} else if (entryKey > key) {
+				high = mid - 1;
+			} else {
+				return (int) (entries.get(mid) & ((1 << PAYLOAD_BITS) - 1));
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Method that returns the key of a position. Adding the occupied cells
+	 * to the cells of the player to move gives a number that is different
+	 * for every position, no matter which player started.
+	 *
+	 * @param current
+	 *            The cells of the player to move
+	 * @param occupied
+	 *            The cells of both players
+	 * @return long The key of the position
+	 */
+	static long getKey(final long current, final long occupied) {
+		return current + occupied;
+	}
+
+	/**
+	 * Method that mirrors a bitboard mask from left to right.
+	 *
+	 * @param mask
+	 *            The mask that is mirrored
+	 * @param rows
+	 *            The number of rows of the board
+	 * @param cols
+	 *            The number of columns of the board
+	 * @return long The mirrored mask
+	 */
+	static long mirror(final long mask, final int rows, final int cols) {
+		int height = rows + 1;
+		long column = (1L << height) - 1;
+		long mirrored = 0;
+		for (int col = 0; col < cols; col++) {
+			long bits = (mask >>> (col * height)) & column;
+			mirrored |= bits << ((cols - 1 - col) * height);
+		}
+		return mirrored;
+	}
+
+	/**
+	 * Method that packs a move and a result into the payload of an entry.
+	 *
+	 * @param col
+	 *            The best column
+	 * @param result
+	 *            WIN, DRAW or LOSS for the player to move
+	 * @return int The payload
+	 */
+	static int pack(final int col, final int result) {
+		return col << 2 | result;
+	}
+
+	/**
+	 * Getter method that returns the best column of a probe result.
+	 *
+	 * @param payload
+	 *            The result of probe
+	 * @return int The best column
+	 */
+	public static int getColumn(final int payload) {
+		return payload >>> 2;
+	}
+
+	/**
+	 * Getter method that returns the result of a probe result.
+	 *
+	 * @param payload
+	 *            The result of probe
+	 * @return int WIN, DRAW or LOSS for the player to move
+	 */
+	public static int getResult(final int payload) {
+		return payload & 0x3;
+	}
+
+	/**
+	 * Getter method that returns how many positions the book holds.
+	 *
+	 * @return int The number of entries
+	 */
+	public int size() {
+		return entries.limit();
+	}
+}
@@ -0,0 +1,212 @@
+package connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class builds an opening book offline. It visits every position that
+ * can be reached within a number of plies from the empty board, solves each
+ * one with a search that runs to the end of the game, and writes the best
+ * move and result of every position it could prove to a book file that
+ * OpeningBook can map into memory. A position whose search runs out of time
+ * before it is proven is left out, so every move in the book is a perfect
+ * move.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class OpeningBookBuilder {
+
+	/** Number of rows of the board the book is built for. */
+	private final int rows;
+
+	/** Number of columns of the board the book is built for. */
+	private final int cols;
+
+	/** The search used to solve every position. */
+	private final Negamax search;
+
+	/** Keys of the positions that have already been visited. */
+	private final Set<Long> visited = new HashSet<Long>();
+
+	/** Entries of the book, packed the way they are written. */
+	private long[] entries = new long[1024];
+
+	/** Number of entries in the book. */
+	private int count;
+
+	/** Number of positions that could not be proven in time. */
+	private int unproven;
+
+	/**
+	 * Constructor that instantiates a new builder.
+	 *
+	 * @param rows
+	 *            The number of rows of the board
+	 * @param cols
+	 *            The number of columns of the board
+	 * @param timeLimit
+	 *            How many milliseconds each position may be searched
+	 * @param tableSize
+	 *            How many megabytes the transposition table uses
+	 */
+	public OpeningBookBuilder(final int rows, final int cols,
+			final long timeLimit, final int tableSize) {
+		if ((rows + 1) * cols + OpeningBook.PAYLOAD_BITS > Long.SIZE) {
+			throw new IllegalArgumentException("A " + rows + "x" + cols
+					+ " board is too large for an opening book");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.search = new Negamax(rows * cols, timeLimit);
+		this.search.setTranspositionTable(new TranspositionTable(tableSize));
+	}
+
+	/**
+	 * Main method that builds a book for the standard board.
+	 *
+	 * @param args
+	 *            The book file to write, how many plies deep the book
+	 *            goes, and optionally the seconds each position may be
+	 *            searched and the table size in megabytes
+	 * @throws IOException
+	 *             If the book file cannot be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: OpeningBookBuilder <book file> "
+					+ "<plies> [seconds per position] [table megabytes]");
+			System.exit(1);
+		}
+		int plies = Integer.parseInt(args[1]);
+		long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+		int tableSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+		OpeningBookBuilder builder = new OpeningBookBuilder(6, 7,
+				seconds * 1000, tableSize);
+		builder.build(plies);
+		try (OutputStream out = Files.newOutputStream(Paths.get(args[0]))) {
+			builder.write(out);
+		}
+		System.out.println("Wrote " + builder.count + " positions, "
+				+ builder.unproven + " could not be proven");
+	}
+
+	/**
+	 * Method that solves every position up to a number of plies.
+	 *
+	 * @param plies
+	 *            How many plies deep the book goes
+	 */
+	public void build(final int plies) {
+		visit(new Bitboard(rows, cols), Player.PLAYER1, plies);
+	}
+
+	/**
+	 * Helper method that solves a position and then every position that
+	 * follows from it, skipping positions (and their mirror images) that
+	 * were already visited through a different order of moves.
+	 *
+	 * @param board
+	 *            The position
+	 * @param player
+	 *            Whose turn it is
+	 * @param plies
+	 *            How many more plies to go down
+	 */
+	private void visit(final Bitboard board, final Player player,
+			final int plies) {
+		long current = board.getMask(player);
+		long occupied = current | board.getMask(player.next());
+		long key = Math.min(OpeningBook.getKey(current, occupied),
+				OpeningBook.getKey(OpeningBook.mirror(current, rows, cols),
+						OpeningBook.mirror(occupied, rows, cols)));
+		if (board.isFull() || !visited.add(key)) {
+			return;
+		}
+		solve(board, player, key);
+		if (plies == 0) {
+			return;
+		}
+		for (int col = 0; col < cols; col++) {
+			if (board.canPlay(col)) {
+				board.play(col, player);
+				if (!board.hasWon(player)) {
+					visit(board, player.next(), plies - 1);
+				}
+				board.undo(col);
+			}
+		}
+	}
+
+	/**
+	 * Helper method that solves a single position and adds it to the book
+	 * if the search proved its result.
+	 *
+	 * @param board
+	 *            The position
+	 * @param player
+	 *            Whose turn it is
+	 * @param key
+	 *            The key the position is stored under
+	 */
+	private void solve(final Bitboard board, final Player player,
+			final long key) {
+		Move move = search.search(board, player);
+		int remaining = rows * cols - board.getMoves();
+		int score = move.getRating();
+		int result;
+		if (score > Negamax.WIN_SCORE - Long.SIZE) {
+			result = OpeningBook.WIN;
+		} else if (score < -Negamax.WIN_SCORE + Long.SIZE) {
+			result = OpeningBook.LOSS;
+		} else if (search.getCompletedDepth() >= remaining) {
+			result = OpeningBook.DRAW;
+		} else {
+			unproven++;
+			return;
+		}
+		int col = move.getCol();
+		long current = board.getMask(player);
+		long occupied = current | board.getMask(player.next());
+		if (key != OpeningBook.getKey(current, occupied)) {
+			col = cols - 1 - col;
+		}
+		if (count == entries.length) {
+			entries = Arrays.copyOf(entries, count * 2);
+		}
+		entries[count++] = key << OpeningBook.PAYLOAD_BITS
+				| OpeningBook.pack(col, result);
+	}
+
+	/**
+	 * Method that writes the book to a stream, sorted by key.
+	 *
+	 * @param out
+	 *            The stream the book is written to
+	 * @throws IOException
+	 *             If the book cannot be written
+	 */
+	public void write(final OutputStream out) throws IOException {
+		long[] sorted = Arrays.copyOf(entries, count);
+		Arrays.sort(sorted);
+		DataOutputStream data = new DataOutputStream(
+				new BufferedOutputStream(out));
+		data.writeInt(OpeningBook.MAGIC);
+		data.writeShort(OpeningBook.VERSION);
+		data.writeByte(rows);
+		data.writeByte(cols);
+		data.writeInt(count);
+		data.writeInt(0);
+		for (long entry : sorted) {
+			data.writeLong(entry);
+		}
+		data.flush();
+	}
+}
@@ -0,0 +1,231 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class runs the AI search on several threads at once. It uses the
+ * Lazy SMP approach: every thread runs its own Negamax search on its own
+ * copy of the board, and all of them share one transposition table. The
+ * helper threads start on different root moves, so the positions they store
+ * in the table are used by the other threads to skip work. The move of the
+ * thread that searched the deepest is played.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class ParallelSearch {
+
+	/** The search run on the calling thread, whose settings all use. */
+	private final Negamax primary;
+
+	/** The searches run by the helper threads. */
+	private final Negamax[] helpers;
+
+	/** The pool the helper searches are run on. */
+	private final ForkJoinPool pool;
+
+	/** How many positions the last search visited on all threads. */
+	private long nodes;
+
+	/** The deepest iteration of the last search that finished. */
+	private int completedDepth;
+
+	/** How many table lookups of the last search found their position. */
+	private long tableHits;
+
+	/** How many table lookups of the last search missed. */
+	private long tableMisses;
+
+	/** How many positions of the last search had a beta cutoff. */
+	private long cutoffs;
+
+	/** How many of those cutoffs came from the first move searched. */
+	private long firstMoveCutoffs;
+
+	/**
+	 * Constructor that instantiates a new parallel search. The depth,
+	 * time, move ordering and transposition table of the primary search
+	 * are used by every thread.
+	 *
+	 * @param primary
+	 *            The search that is run on the calling thread
+	 * @param threads
+	 *            How many threads search at once, including the calling
+	 *            thread
+	 */
+	public ParallelSearch(final Negamax primary, final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("There must be at least one "
+					+ "search thread");
+		}
+		this.primary = primary;
+		this.helpers = new Negamax[threads - 1];
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i] = new Negamax(primary.getMaxDepth(),
+					primary.getTimeLimit());
+			helpers[i].setHelper(i + 1);
+		}
+		this.pool = helpers.length == 0 ? null : new ForkJoinPool(helpers.length);
+	}
+
+	/**
+	 * Method that searches for the best move of a player on every thread.
+	 * The helper threads are stopped as soon as the calling thread is
+	 * done, so the search takes no longer than the time budget of the
+	 * primary search.
+	 *
+	 * @param board
+	 *            The position that is being searched
+	 * @param player
+	 *            Whose turn it is
+	 * @return Move The best move found, or null if there are no moves left
+	 */
+	public Move search(final Board board, final Player player) {
+		List<ForkJoinTask<Move>> tasks = new ArrayList<ForkJoinTask<Move>>();
+		for (int i = 0; i < helpers.length; i++) {
+			final Negamax helper = helpers[i];
+			final Board copy = board.copy();
+			helper.setMaxDepth(primary.getMaxDepth());
+			helper.setTimeLimit(primary.getTimeLimit());
+			helper.setKillerMoves(primary.isKillerMoves());
+			helper.setHistoryHeuristic(primary.isHistoryHeuristic());
+			Evaluator evaluator = primary.getEvaluator();
+			if (evaluator == null) {
+				helper.setEvaluator(null);
+			} else if (helper.getEvaluator() == null
+					|| helper.getEvaluator().getClass() != evaluator.getClass()) {
+				helper.setEvaluator(evaluator.copy());
+			}
+			helper.setTranspositionTable(primary.getTranspositionTable());
+			helper.setStopped(false);
+			tasks.add(pool.submit(() -> helper.search(copy, player)));
+		}
+
+		Move best = primary.search(board, player);
+		completedDepth = primary.getCompletedDepth();
+		nodes = primary.getNodes();
+		tableHits = primary.getTableHits();
+		tableMisses = primary.getTableMisses();
+		cutoffs = primary.getCutoffs();
+		firstMoveCutoffs = primary.getFirstMoveCutoffs();
+		for (Negamax helper : helpers) {
+			helper.setStopped(true);
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			Move move = join(tasks.get(i));
+			nodes += helpers[i].getNodes();
+			tableHits += helpers[i].getTableHits();
+			tableMisses += helpers[i].getTableMisses();
+			cutoffs += helpers[i].getCutoffs();
+			firstMoveCutoffs += helpers[i].getFirstMoveCutoffs();
+			if (move != null && helpers[i].getCompletedDepth() > completedDepth) {
+				completedDepth = helpers[i].getCompletedDepth();
+				best = move;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Helper method that waits for a helper search to finish.
+	 *
+	 * @param task
+	 *            The task the helper search is running in
+	 * @return Move The move the helper found
+	 */
+	private static Move join(final ForkJoinTask<Move> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Helper search failed",
+					e.getCause());
+		}
+	}
+
+	/**
+	 * Method that stops the helper threads. The search cannot be used
+	 * any more once this is called.
+	 *
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Getter method that returns how many threads search at once.
+	 *
+	 * @return int The number of threads, including the calling thread
+	 */
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+
+	/**
+	 * Getter method that returns how many positions the last search
+	 * visited on all threads together.
+	 *
+	 * @return long The number of nodes searched
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Getter method that returns the deepest iteration of the last search
+	 * that finished on any thread.
+	 *
+	 * @return int The depth the best move was found at
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Getter method that returns how many transposition table lookups of
+	 * the last search found their position on all threads together.
+	 *
+	 * @return long The number of table hits
+	 */
+	public long getTableHits() {
+		return tableHits;
+	}
+
+	/**
+	 * Getter method that returns how many transposition table lookups of
+	 * the last search missed on all threads together.
+	 *
+	 * @return long The number of table misses
+	 */
+	public long getTableMisses() {
+		return tableMisses;
+	}
+
+	/**
+	 * Getter method that returns how many positions of the last search
+	 * had a beta cutoff on all threads together.
+	 *
+	 * @return long The number of beta cutoffs
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Getter method that returns how many beta cutoffs of the last search
+	 * came from the first move searched on all threads together.
+	 *
+	 * @return long The number of cutoffs on the first move
+	 */
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+}
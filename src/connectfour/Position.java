@@ -0,0 +1,282 @@
+package connectfour;
+
+import java.util.Arrays;
+
+/**
+ * This class is an immutable snapshot of a connect four board. It holds the
+ * size of the board, how many pieces in a row win, and the bitboard masks of
+ * both players, and nothing else, so a snapshot can be handed to another
+ * thread or kept around in large numbers for analysis and replay. A board
+ * can be created from a snapshot whenever moves need to be made on it.
+ *
+ * <p>
+ * Boards that fit in a single long store one mask per player, so taking a
+ * snapshot of them and creating a board from it is constant time. Larger
+ * boards store an array of words per player that uses the same layout,
+ * continued over as many longs as are needed. Taking a snapshot of them
+ * copies the words, and creating a board from it plays every piece again,
+ * both in time proportional to the size of the board.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class Position {
+
+	/** Number of rows on the board. */
+	private final int rows;
+
+	/** Number of columns on the board. */
+	private final int cols;
+
+	/** Number of pieces in a row that win the game. */
+	private final int connect;
+
+	/** Cells owned by the first player, if the board fits in a long. */
+	private final long player1;
+
+	/** Cells owned by the second player, if the board fits in a long. */
+	private final long player2;
+
+	/** Cells owned by the first player on a large board, or null. */
+	private final long[] words1;
+
+	/** Cells owned by the second player on a large board, or null. */
+	private final long[] words2;
+
+	/**
+	 * Constructor that instantiates a new snapshot of a connect four board
+	 * from the masks of both players. The masks use the same layout as
+	 * Bitboard.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param player1
+	 *            The cells owned by the first player
+	 * @param player2
+	 *            The cells owned by the second player
+	 */
+	public Position(final int rows, final int cols, final long player1,
+			final long player2) {
+		this(rows, cols, Bitboard.CONNECT_FOUR, player1, player2);
+	}
+
+	/**
+	 * Constructor that instantiates a new snapshot from the masks of both
+	 * players. The masks use the same layout as Bitboard.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param player1
+	 *            The cells owned by the first player
+	 * @param player2
+	 *            The cells owned by the second player
+	 */
+	public Position(final int rows, final int cols, final int connect,
+			final long player1, final long player2) {
+		if ((player1 & player2) != 0) {
+			throw new IllegalArgumentException("A cell cannot be owned by "
+					+ "both players");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		this.player1 = player1;
+		this.player2 = player2;
+		this.words1 = null;
+		this.words2 = null;
+	}
+
+	/**
+	 * Constructor that instantiates a new snapshot of a large board from
+	 * the words of both players. The words use the same layout as
+	 * GridBoard, and are copied.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param player1
+	 *            The cells owned by the first player
+	 * @param player2
+	 *            The cells owned by the second player
+	 */
+	public Position(final int rows, final int cols, final int connect,
+			final long[] player1, final long[] player2) {
+		if (player1.length != player2.length) {
+			throw new IllegalArgumentException("Both players must have the "
+					+ "same number of words");
+		}
+		for (int i = 0; i < player1.length; i++) {
+			if ((player1[i] & player2[i]) != 0) {
+				throw new IllegalArgumentException("A cell cannot be owned "
+						+ "by both players");
+			}
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		this.player1 = 0;
+		this.player2 = 0;
+		this.words1 = player1.clone();
+		this.words2 = player2.clone();
+	}
+
+	/**
+	 * Method that creates a new board with the pieces of this snapshot.
+	 *
+	 * @return Board A Bitboard if the board fits in a long, otherwise a
+	 *         GridBoard
+	 */
+	public Board toBoard() {
+		if (words1 == null) {
+			return new Bitboard(this);
+		}
+		return new GridBoard(this);
+	}
+
+	/**
+	 * Getter method that returns which player owns a cell.
+	 *
+	 * @param row
+	 *            The row of the cell, where row zero is the top of the
+	 *            board
+	 * @param col
+	 *            The column of the cell
+	 * @return Player The owner of the cell, or NONE if it is empty
+	 */
+	public Player getOwner(final int row, final int col) {
+		int index = col * (rows + 1) + rows - 1 - row;
+		if (isSet(Player.PLAYER1, index)) {
+			return Player.PLAYER1;
+		}
+		if (isSet(Player.PLAYER2, index)) {
+			return Player.PLAYER2;
+		}
+		return Player.NONE;
+	}
+
+	/**
+	 * Helper method that checks if a bit of a player is set.
+	 *
+	 * @param player
+	 *            The player
+	 * @param index
+	 *            The index of the bit
+	 * @return boolean If the player owns the cell of the bit
+	 */
+	private boolean isSet(final Player player, final int index) {
+		if (words1 == null) {
+			return (getMask(player) & 1L << index) != 0;
+		}
+		long[] words = player == Player.PLAYER1 ? words1 : words2;
+		return (words[index >>> 6] & 1L << index) != 0;
+	}
+
+	/**
+	 * Getter method that returns the cells owned by a player on a board
+	 * that fits in a long.
+	 *
+	 * @param player
+	 *            The player whose cells are returned
+	 * @return long A mask with one bit set for every cell of the player
+	 * @throws IllegalStateException
+	 *             If the board is too large for a single mask
+	 */
+	public long getMask(final Player player) {
+		if (words1 != null) {
+			throw new IllegalStateException("A " + rows + "x" + cols
+					+ " board does not fit in a single mask");
+		}
+		return player == Player.PLAYER1 ? player1 : player2;
+	}
+
+	/**
+	 * Getter method that returns the cells owned by a player as words,
+	 * which works for boards of every size.
+	 *
+	 * @param player
+	 *            The player whose cells are returned
+	 * @return long[] A copy of the words of the player
+	 */
+	public long[] getWords(final Player player) {
+		if (words1 == null) {
+			return new long[] {getMask(player)};
+		}
+		return (player == Player.PLAYER1 ? words1 : words2).clone();
+	}
+
+	/**
+	 * Getter method that returns how many pieces are on the board.
+	 *
+	 * @return int The number of pieces on the board
+	 */
+	public int getMoves() {
+		if (words1 == null) {
+			return Long.bitCount(player1 | player2);
+		}
+		int moves = 0;
+		for (int i = 0; i < words1.length; i++) {
+			moves += Long.bitCount(words1[i] | words2[i]);
+		}
+		return moves;
+	}
+
+	/**
+	 * Getter method that returns the number of rows on the board.
+	 *
+	 * @return int The number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Getter method that returns the number of columns on the board.
+	 *
+	 * @return int The number of columns
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Getter method that returns how many pieces in a row win the game.
+	 *
+	 * @return int The length of a winning row
+	 */
+	public int getConnect() {
+		return connect;
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+		if (!(other instanceof Position)) {
+			return false;
+		}
+		Position position = (Position) other;
+		return rows == position.rows && cols == position.cols
+				&& connect == position.connect
+				&& player1 == position.player1
+				&& player2 == position.player2
+				&& Arrays.equals(words1, position.words1)
+				&& Arrays.equals(words2, position.words2);
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = player1 * 31 + player2;
+		hash = hash * 31 + Arrays.hashCode(words1) * 31
+				+ Arrays.hashCode(words2);
+		return (int) (hash ^ (hash >>> 32)) * 31 + rows * 64 + cols
+				+ connect * 4096;
+	}
+}
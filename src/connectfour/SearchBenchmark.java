@@ -0,0 +1,101 @@
+package connectfour;
+
+/**
+ * This class measures how the speed of the AI search grows with the number
+ * of threads. It searches a fixed set of positions for a fixed amount of
+ * time with one thread, two threads, four threads and so on up to the
+ * number of cores, and prints the nodes searched per second, the speedup
+ * over one thread and the average depth that was reached.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class SearchBenchmark {
+
+	/** Positions to search, written as the columns played from the start. */
+	private static final String[] POSITIONS = {
+		"",
+		"3",
+		"33",
+		"3342",
+		"334225",
+		"33422516",
+		"3243",
+		"3342251600114455",
+	};
+
+	/** How many megabytes the shared transposition table uses. */
+	private static final int TABLE_SIZE = 64;
+
+	/**
+	 * Constructor that is private because this class is only run from the
+	 * command line.
+	 *
+	 */
+	private SearchBenchmark() {
+	}
+
+	/**
+	 * Main method that runs the benchmark.
+	 *
+	 * @param args
+	 *            Optionally the highest number of threads to try and the
+	 *            number of milliseconds to search each position
+	 */
+	public static void main(final String[] args) {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors();
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+		// Warm up the JIT so the first row is not measured cold.
+		run(1, millis / 4);
+
+		System.out.println("threads,nodes_per_second,speedup,average_depth");
+		double single = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double[] result = run(threads, millis);
+			if (threads == 1) {
+				single = result[0];
+			}
+			System.out.printf("%d,%.0f,%.2f,%.1f%n", threads, result[0],
+					result[0] / single, result[1]);
+			if (threads < maxThreads && threads * 2 > maxThreads) {
+				threads = maxThreads / 2;
+			}
+		}
+	}
+
+	/**
+	 * Helper method that searches every position with a number of threads.
+	 *
+	 * @param threads
+	 *            How many threads search at once
+	 * @param millis
+	 *            How long each position is searched
+	 * @return double[] The nodes per second and the average depth reached
+	 */
+	private static double[] run(final int threads, final long millis) {
+		Negamax primary = new Negamax(Long.SIZE, millis);
+		primary.setTranspositionTable(new TranspositionTable(TABLE_SIZE));
+		ParallelSearch search = new ParallelSearch(primary, threads);
+		long nodes = 0;
+		long depth = 0;
+		long start = System.nanoTime();
+		for (String moves : POSITIONS) {
+			Bitboard board = new Bitboard(6, 7);
+			Player player = Player.PLAYER1;
+			for (char col : moves.toCharArray()) {
+				board.play(col - '0', player);
+				player = player.next();
+			}
+			primary.getTranspositionTable().clear();
+			search.search(board, player);
+			nodes += search.getNodes();
+			depth += search.getCompletedDepth();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		search.shutdown();
+		return new double[] {nodes / seconds,
+			(double) depth / POSITIONS.length};
+	}
+}
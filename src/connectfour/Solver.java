@@ -0,0 +1,603 @@
+package connectfour;
+
+/**
+ * This class proves the game-theoretic value of a connect four position:
+ * whether the player to move wins, draws or loses with perfect play from
+ * both sides, and how many plies it takes. Unlike Negamax it never stops
+ * early and never guesses, so its answer can settle a disputed game.
+ *
+ * <p>
+ * A position is scored by how early it is won: a win with the player's
+ * last piece scores 1, and every move of the player that is saved scores
+ * one more. The score is found with null-window searches, each of which
+ * only asks whether the score is above a guess, and the guesses close in
+ * on the exact score by bisection. The search plays straight on the bits
+ * of the board and looks one move ahead before trying a move: a move that
+ * lets the opponent win right away is never searched, and if the opponent
+ * has two winning cells the position is lost without searching at all.
+ * The moves that make the most new threats are tried first, and every
+ * bound that is proven is kept in a large transposition table, so a
+ * position that is reached again in another order costs nothing. A
+ * position and its mirror image have the same value, so they share one
+ * entry, which halves the work below the first moves of a symmetric
+ * position such as the empty board.
+ * </p>
+ *
+ * <p>
+ * The solver works on boards that fit in a bitboard where four pieces in
+ * a row win.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class Solver {
+
+	/**
+	 * How many megabytes the transposition table uses by default, if the
+	 * heap has room for it, such as with -Xmx2g.
+	 */
+	public static final int DEFAULT_TABLE_SIZE = 1024;
+
+	/** How many megabytes of the heap the default table leaves free. */
+	private static final int HEAP_RESERVE = 512;
+
+	/** Number of rows of the board. */
+	private final int rows;
+
+	/** Number of columns of the board. */
+	private final int cols;
+
+	/** Number of cells on the board. */
+	private final int cells;
+
+	/** The bottom cell of every column. */
+	private final long bottom;
+
+	/** Every cell of the board, without the empty bit on top of each column. */
+	private final long boardMask;
+
+	/**
+	 * The bit distances between neighbouring cells of a row and of both
+	 * diagonals, or none if the board is too narrow for four in a row
+	 * across columns and three of them could take a shift past 63 bits.
+	 */
+	private final int[] lineShifts;
+
+	/** The columns of the board, ordered from the center outward. */
+	private final int[] columnOrder;
+
+	/** Bounds of the positions that have already been proven. */
+	private final TranspositionTable table;
+
+	/** One buffer of moves per ply, reused by every position at that ply. */
+	private final long[][] moveBuffer;
+
+	/** The ordering score of every move in the buffers. */
+	private final int[][] scoreBuffer;
+
+	/** How many positions the last solve visited. */
+	private long nodes;
+
+	/**
+	 * This class is the proven value of a position.
+	 */
+	public static final class Solution {
+
+		/** OpeningBook.WIN, DRAW or LOSS for the player to move. */
+		private final int result;
+
+		/** How many plies the game lasts with perfect play. */
+		private final int plies;
+
+		/** A column that keeps the result, or -1 if the game is over. */
+		private final int col;
+
+		/** The score of the position for the player to move. */
+		private final int score;
+
+		/**
+		 * Constructor that instantiates a new solution.
+		 *
+		 * @param result
+		 *            OpeningBook.WIN, DRAW or LOSS
+		 * @param plies
+		 *            How many plies the game lasts with perfect play
+		 * @param col
+		 *            A column that keeps the result, or -1
+		 * @param score
+		 *            The score of the position for the player to move
+		 */
+		Solution(final int result, final int plies, final int col,
+				final int score) {
+			this.result = result;
+			this.plies = plies;
+			this.col = col;
+			this.score = score;
+		}
+
+		/**
+		 * Getter method that returns the result for the player to move.
+		 *
+		 * @return int OpeningBook.WIN, DRAW or LOSS
+		 */
+		public int getResult() {
+			return result;
+		}
+
+		/**
+		 * Getter method that returns how many plies are left until the
+		 * game is won or the board is full, when the winner wins as soon
+		 * as possible and the loser holds out as long as possible.
+		 *
+		 * @return int The number of plies, counting the last one
+		 */
+		public int getPlies() {
+			return plies;
+		}
+
+		/**
+		 * Getter method that returns a column that keeps the result, and
+		 * wins as soon or loses as late as possible.
+		 *
+		 * @return int The column, or -1 if the game is already over
+		 */
+		public int getCol() {
+			return col;
+		}
+
+		/**
+		 * Getter method that returns the score of the position: positive
+		 * for a win, zero for a draw and negative for a loss, further from
+		 * zero the sooner the game is decided.
+		 *
+		 * @return int The score for the player to move
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		@Override
+		public String toString() {
+			String name = result == OpeningBook.WIN ? "win"
+					: result == OpeningBook.LOSS ? "loss" : "draw";
+			return name + " in " + plies + " plies"
+					+ (col < 0 ? "" : ", play column " + col);
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new solver for the standard board.
+	 *
+	 */
+	public Solver() {
+		this(6, 7, getDefaultTableSize());
+	}
+
+	/**
+	 * Constructor that instantiates a new solver.
+	 *
+	 * @param rows
+	 *            The number of rows of the board
+	 * @param cols
+	 *            The number of columns of the board
+	 * @param tableSize
+	 *            How many megabytes the transposition table uses
+	 */
+	public Solver(final int rows, final int cols, final int tableSize) {
+		if (rows < 1 || cols < 1 || !Bitboard.fits(rows, cols)) {
+			throw new IllegalArgumentException("A " + rows + "x" + cols
+					+ " board cannot be solved");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.cells = rows * cols;
+		int height = rows + 1;
+		long bottomCells = 0;
+		for (int col = 0; col < cols; col++) {
+			bottomCells |= 1L << (col * height);
+		}
+		this.bottom = bottomCells;
+		this.boardMask = bottomCells * ((1L << rows) - 1);
+		this.lineShifts = cols < Bitboard.CONNECT_FOUR ? new int[0]
+				: new int[] {height, rows, height + 1};
+		this.columnOrder = new int[cols];
+		for (int i = 0; i < cols; i++) {
+			columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+		}
+		this.table = new TranspositionTable(tableSize);
+		this.moveBuffer = new long[cells + 1][cols];
+		this.scoreBuffer = new int[cells + 1][cols];
+	}
+
+	/**
+	 * Main method that solves a position given as the columns played from
+	 * the empty standard board, and prints the result for the player to
+	 * move.
+	 *
+	 * @param args
+	 *            The columns played, one digit each, or an empty string
+	 *            for the empty board, and optionally the table size in
+	 *            megabytes
+	 */
+	public static void main(final String[] args) {
+		String moves = args.length > 0 ? args[0] : "";
+		int tableSize = args.length > 1 ? Integer.parseInt(args[1])
+				: getDefaultTableSize();
+		Bitboard board = new Bitboard(6, 7);
+		Player player = Player.PLAYER1;
+		for (int i = 0; i < moves.length(); i++) {
+			board.play(moves.charAt(i) - '0', player);
+			player = player.next();
+		}
+		Solver solver = new Solver(6, 7, tableSize);
+		long start = System.nanoTime();
+		Solution solution = solver.solve(board, player);
+		System.out.printf("%s (%d nodes, %.1f s)%n", solution,
+				solver.getNodes(), (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Method that proves the value of a position and finds a move that
+	 * keeps it.
+	 *
+	 * @param board
+	 *            The position, which is left unchanged
+	 * @param player
+	 *            Whose turn it is
+	 * @return Solution The proven value of the position
+	 */
+	public Solution solve(final Board board, final Player player) {
+		if (board.getRows() != rows || board.getCols() != cols
+				|| board.getConnect() != Bitboard.CONNECT_FOUR) {
+			throw new IllegalArgumentException("The solver is for a " + rows
+					+ "x" + cols + " connect four board");
+		}
+		nodes = 0;
+		table.newSearch();
+		if (board.hasWon(player.next())) {
+			return new Solution(OpeningBook.LOSS, 0, -1, -1);
+		}
+		if (board.hasWon(player) || board.isFull()) {
+			return new Solution(board.isFull() ? OpeningBook.DRAW
+					: OpeningBook.WIN, 0, -1, 0);
+		}
+		Bitboard bitboard = board instanceof Bitboard ? (Bitboard) board
+				: new Bitboard(board.snapshot());
+		long current = bitboard.getMask(player);
+		long mask = current | bitboard.getMask(player.next());
+		int moves = board.getMoves();
+
+		int score = solve(current, mask, moves);
+		int bestCol = findColumn(current, mask, moves, score);
+		return new Solution(getResult(score), getPlies(score, moves),
+				bestCol, score);
+	}
+
+	/**
+	 * Helper method that finds a column that keeps the score of a
+	 * position. The score is already known, so each move only needs a
+	 * null-window search that asks whether it reaches the score, rather
+	 * than a solve of its exact value.
+	 *
+	 * @param current
+	 *            The cells of the player to move
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @param moves
+	 *            How many pieces are on the board
+	 * @param score
+	 *            The score of the position
+	 * @return int The column, or -1 if no move reaches the score
+	 */
+	private int findColumn(final long current, final long mask,
+			final int moves, final int score) {
+		long possible = possible(mask);
+		long wins = winningCells(current, mask) & possible;
+		for (int col : columnOrder) {
+			long move = possible & columnMask(col);
+			if (move == 0) {
+				continue;
+			}
+			long child = mask | move;
+			long opponent = current ^ mask;
+			int childScore;
+			if ((wins & move) != 0) {
+				childScore = (cells + 1 - moves) / 2;
+			} else if (moves + 1 == cells) {
+				childScore = 0;
+			} else if ((winningCells(opponent, child) & possible(child)) != 0) {
+				childScore = -(cells - moves) / 2;
+			} else {
+				childScore = -negamax(opponent, child, moves + 1, -score,
+						1 - score);
+			}
+			if (childScore >= score) {
+				return col;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Helper method that finds the exact score of a position by narrowing
+	 * a window around it with null-window searches.
+	 *
+	 * @param current
+	 *            The cells of the player to move
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @param moves
+	 *            How many pieces are on the board
+	 * @return int The score of the position
+	 */
+	private int solve(final long current, final long mask, final int moves) {
+		if ((winningCells(current, mask) & possible(mask)) != 0) {
+			return (cells + 1 - moves) / 2;
+		}
+		int min = -(cells - moves) / 2;
+		int max = (cells + 1 - moves) / 2;
+		while (min < max) {
+			int guess = min + (max - min) / 2;
+			if (guess <= 0 && min / 2 < guess) {
+				guess = min / 2;
+			} else if (guess >= 0 && max / 2 > guess) {
+				guess = max / 2;
+			}
+			int score = negamax(current, mask, moves, guess, guess + 1);
+			if (score <= guess) {
+				max = score;
+			} else {
+				min = score;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Helper method that searches a position in which the player to move
+	 * cannot win right away. The score is only exact when it is strictly
+	 * between alpha and beta; otherwise it is a bound on the side of the
+	 * window it falls on.
+	 *
+	 * @param current
+	 *            The cells of the player to move
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @param moves
+	 *            How many pieces are on the board
+	 * @param alpha
+	 *            The score the player is already guaranteed
+	 * @param beta
+	 *            The score the opponent is already guaranteed
+	 * @return int The score of the position for the player to move
+	 */
+	private int negamax(final long current, final long mask, final int moves,
+			int alpha, int beta) {
+		nodes++;
+		long next = nonLosingMoves(current, mask);
+		if (next == 0) {
+			return -(cells - moves) / 2;
+		}
+		if (moves >= cells - 2) {
+			return 0;
+		}
+		int min = -(cells - 2 - moves) / 2;
+		if (alpha < min) {
+			alpha = min;
+			if (alpha >= beta) {
+				return alpha;
+			}
+		}
+		int max = (cells - 1 - moves) / 2;
+		long key = mix(Math.min(OpeningBook.getKey(current, mask),
+				OpeningBook.getKey(OpeningBook.mirror(current, rows, cols),
+						OpeningBook.mirror(mask, rows, cols))));
+		long entry = table.probe(key);
+		if (entry != 0) {
+			int stored = TranspositionTable.getScore(entry);
+			if (TranspositionTable.getBound(entry)
+					== TranspositionTable.LOWER_BOUND) {
+				if (alpha < stored) {
+					alpha = stored;
+					if (alpha >= beta) {
+						return alpha;
+					}
+				}
+			} else if (stored < max) {
+				max = stored;
+			}
+		}
+		if (beta > max) {
+			beta = max;
+			if (alpha >= beta) {
+				return beta;
+			}
+		}
+
+		long[] buffer = moveBuffer[moves];
+		int[] scores = scoreBuffer[moves];
+		int count = 0;
+		for (int i = cols - 1; i >= 0; i--) {
+			long move = next & columnMask(columnOrder[i]);
+			if (move != 0) {
+				int score = Long.bitCount(winningCells(current | move, mask));
+				int j = count++;
+				for (; j > 0 && scores[j - 1] > score; j--) {
+					buffer[j] = buffer[j - 1];
+					scores[j] = scores[j - 1];
+				}
+				buffer[j] = move;
+				scores[j] = score;
+			}
+		}
+		int depth = cells - moves;
+		for (int i = count - 1; i >= 0; i--) {
+			int score = -negamax(current ^ mask, mask | buffer[i], moves + 1,
+					-beta, -alpha);
+			if (score >= beta) {
+				table.store(key, score, depth,
+						TranspositionTable.LOWER_BOUND,
+						TranspositionTable.NO_MOVE);
+				return score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+		}
+		table.store(key, alpha, depth, TranspositionTable.UPPER_BOUND,
+				TranspositionTable.NO_MOVE);
+		return alpha;
+	}
+
+	/**
+	 * Helper method that returns every move the player to move can make
+	 * without letting the opponent win on the next move. A move under a
+	 * winning cell of the opponent is left out, and if the opponent could
+	 * win right away the player has to block, and loses if there is more
+	 * than one cell to block.
+	 *
+	 * @param current
+	 *            The cells of the player to move
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @return long The moves, one bit each, or zero if every move loses
+	 */
+	private long nonLosingMoves(final long current, final long mask) {
+		long possible = possible(mask);
+		long opponentWins = winningCells(current ^ mask, mask);
+		long forced = possible & opponentWins;
+		if (forced != 0) {
+			if ((forced & (forced - 1)) != 0) {
+				return 0;
+			}
+			possible = forced;
+		}
+		return possible & ~(opponentWins >>> 1);
+	}
+
+	/**
+	 * Helper method that returns the cell each column can be played in.
+	 *
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @return long The playable cells, one bit per column that is not full
+	 */
+	private long possible(final long mask) {
+		return (mask + bottom) & boardMask;
+	}
+
+	/**
+	 * Helper method that returns every empty cell that would give a player
+	 * four in a row, whether or not it can be played yet.
+	 *
+	 * @param position
+	 *            The cells of the player
+	 * @param mask
+	 *            Every cell that has a piece
+	 * @return long The winning cells of the player
+	 */
+	private long winningCells(final long position, final long mask) {
+		long cellsWon = (position << 1) & (position << 2) & (position << 3);
+		for (int shift : lineShifts) {
+			long pair = (position << shift) & (position << 2 * shift);
+			cellsWon |= pair & (position << 3 * shift);
+			cellsWon |= pair & (position >>> shift);
+			pair = (position >>> shift) & (position >>> 2 * shift);
+			cellsWon |= pair & (position << shift);
+			cellsWon |= pair & (position >>> 3 * shift);
+		}
+		return cellsWon & (boardMask ^ mask);
+	}
+
+	/**
+	 * Helper method that returns every cell of a column.
+	 *
+	 * @param col
+	 *            The column
+	 * @return long The cells of the column
+	 */
+	private long columnMask(final int col) {
+		return ((1L << rows) - 1) << (col * (rows + 1));
+	}
+
+	/**
+	 * Helper method that spreads the bits of a position key over the whole
+	 * long, since the table indexes by the low bits and the low bits of a
+	 * key only describe the first columns.
+	 *
+	 * @param key
+	 *            The key of a position
+	 * @return long The mixed key, which is unique for every key
+	 */
+	private static long mix(final long key) {
+		long mixed = key ^ (key >>> 33);
+		mixed *= 0xFF51AFD7ED558CCDL;
+		mixed ^= mixed >>> 33;
+		mixed *= 0xC4CEB9FE1A85EC53L;
+		return mixed ^ (mixed >>> 33);
+	}
+
+	/**
+	 * Helper method that turns a score into a result.
+	 *
+	 * @param score
+	 *            The score for the player to move
+	 * @return int OpeningBook.WIN, DRAW or LOSS
+	 */
+	private static int getResult(final int score) {
+		if (score > 0) {
+			return OpeningBook.WIN;
+		}
+		return score < 0 ? OpeningBook.LOSS : OpeningBook.DRAW;
+	}
+
+	/**
+	 * Helper method that works out how many plies the game lasts from a
+	 * score. A win with score s comes on the move that leaves
+	 * cells + 1 - 2s or cells - 2s pieces before it, whichever has the
+	 * parity of the winner.
+	 *
+	 * @param score
+	 *            The score for the player to move
+	 * @param moves
+	 *            How many pieces are on the board
+	 * @return int How many plies are left, counting the last one
+	 */
+	private int getPlies(final int score, final int moves) {
+		if (score == 0) {
+			return cells - moves;
+		}
+		int winnerMoves = score > 0 ? moves : moves + 1;
+		int before = cells + 1 - 2 * Math.abs(score);
+		if ((before - winnerMoves) % 2 != 0) {
+			before--;
+		}
+		return before - moves + 1;
+	}
+
+	/**
+	 * Getter method that returns how many megabytes the table of a solver
+	 * uses by default. It is DEFAULT_TABLE_SIZE unless that would leave
+	 * less than HEAP_RESERVE megabytes of the heap, or less than half of
+	 * a small heap, for everything else, so a solver can always be
+	 * created.
+	 *
+	 * @return int The table size in megabytes
+	 */
+	public static int getDefaultTableSize() {
+		long heap = Runtime.getRuntime().maxMemory() >> 20;
+		long room = Math.max(heap / 2, heap - HEAP_RESERVE);
+		return (int) Math.max(1, Math.min(DEFAULT_TABLE_SIZE, room));
+	}
+
+	/**
+	 * Getter method that returns how many positions the last solve
+	 * visited.
+	 *
+	 * @return long The number of nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+}
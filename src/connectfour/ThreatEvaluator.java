@@ -0,0 +1,164 @@
+package connectfour;
+
+/**
+ * This class scores positions by their threats and by center control. A
+ * threat is an empty cell that would complete a row for a player, which
+ * is the same as an open row that is one piece short. Threats are found
+ * with a few shifts of the bitboard of each player, and a threat on the
+ * right row counts extra: once the board fills up, the first player can
+ * only force a threat on an odd row (counted from the bottom, starting at
+ * one) to be played out, and the second player one on an even row, so
+ * those are the threats that win zugzwang endgames.
+ *
+ * <p>
+ * Center control is the number of winning rows that run through each
+ * piece, which favors the middle of the board. It is kept up to date as
+ * moves are made and taken back, so a leaf only adds up the threats.
+ * Boards that do not fit in a bitboard are scored by center control
+ * alone.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class ThreatEvaluator implements Evaluator {
+
+	/** Score of each threat. */
+	private static final int THREAT_SCORE = 16;
+
+	/** Score added to a threat on the row that suits its player. */
+	private static final int PARITY_SCORE = 24;
+
+	/** Number of rows of the board the weights were worked out for. */
+	private int rows;
+
+	/** Number of columns of the board the weights were worked out for. */
+	private int cols;
+
+	/** Number of pieces in a row that win on that board. */
+	private int connect;
+
+	/** How many winning rows run through each cell, by column and height. */
+	private int[] weights = new int[0];
+
+	/** The odd rows of a bitboard, counted from the bottom from one. */
+	private long oddRows;
+
+	/** The center control of the first player less that of the second. */
+	private int center;
+
+	@Override
+	public void reset(final Board board) {
+		if (board.getRows() != rows || board.getCols() != cols
+				|| board.getConnect() != connect) {
+			prepare(board.getRows(), board.getCols(), board.getConnect());
+		}
+		center = 0;
+		for (int col = 0; col < cols; col++) {
+			for (int h = 0; h < board.getHeight(col); h++) {
+				Player owner = board.getOwner(rows - 1 - h, col);
+				center += owner == Player.PLAYER1 ? weights[col * rows + h]
+						: -weights[col * rows + h];
+			}
+		}
+	}
+
+	/**
+	 * Helper method that works out the weight of every cell and the mask
+	 * of the odd rows for a new size of board.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 */
+	private void prepare(final int rows, final int cols, final int connect) {
+		this.rows = rows;
+		this.cols = cols;
+		this.connect = connect;
+		weights = new int[rows * cols];
+		int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+		for (int col = 0; col < cols; col++) {
+			for (int h = 0; h < rows; h++) {
+				int lines = 0;
+				for (int[] direction : directions) {
+					for (int start = 0; start < connect; start++) {
+						int firstCol = col - start * direction[0];
+						int firstH = h - start * direction[1];
+						int lastCol = firstCol + (connect - 1) * direction[0];
+						int lastH = firstH + (connect - 1) * direction[1];
+						if (firstCol >= 0 && lastCol < cols
+								&& Math.min(firstH, lastH) >= 0
+								&& Math.max(firstH, lastH) < rows) {
+							lines++;
+						}
+					}
+				}
+				weights[col * rows + h] = lines;
+			}
+		}
+		oddRows = 0;
+		if (Bitboard.fits(rows, cols)) {
+			for (int col = 0; col < cols; col++) {
+				for (int h = 0; h < rows; h += 2) {
+					oddRows |= 1L << (col * (rows + 1) + h);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void played(final Board board, final int col,
+			final Player player) {
+		int weight = weights[col * rows + board.getHeight(col) - 1];
+		center += player == Player.PLAYER1 ? weight : -weight;
+	}
+
+	@Override
+	public void undone(final Board board, final int col,
+			final Player player) {
+		int weight = weights[col * rows + board.getHeight(col) - 1];
+		center -= player == Player.PLAYER1 ? weight : -weight;
+	}
+
+	@Override
+	public int evaluate(final Board board, final Player player) {
+		int score = center;
+		if (board instanceof Bitboard) {
+			Bitboard bitboard = (Bitboard) board;
+			long evenRows = bitboard.getCells() & ~oddRows;
+			Player first = board.getMoves() % 2 == 0 ? player
+					: player.next();
+			long threats1 = bitboard.getThreats(Player.PLAYER1);
+			long threats2 = bitboard.getThreats(Player.PLAYER2);
+			long good1 = first == Player.PLAYER1 ? oddRows : evenRows;
+			long good2 = first == Player.PLAYER2 ? oddRows : evenRows;
+			score += THREAT_SCORE * (Long.bitCount(threats1)
+					- Long.bitCount(threats2))
+					+ PARITY_SCORE * (Long.bitCount(threats1 & good1)
+					- Long.bitCount(threats2 & good2));
+		}
+		if (player == Player.PLAYER2) {
+			score = -score;
+		}
+		return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+	}
+
+	@Override
+	public Evaluator copy() {
+		return new ThreatEvaluator();
+	}
+
+	/**
+	 * Getter method that returns the center control of the position the
+	 * evaluator was last told about.
+	 *
+	 * @return int The center control of the first player less that of the
+	 *         second
+	 */
+	public int getCenter() {
+		return center;
+	}
+}
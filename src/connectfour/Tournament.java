@@ -0,0 +1,771 @@
+package connectfour;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class plays engines with different AI settings against each other to
+ * measure how strong each setting is and what it costs. Every pair of
+ * engines plays the same number of games, which are played on a fixed pool
+ * of threads so many games run at once. Each game starts with a few random
+ * plies, the way the AI opens against a person, and every opening is played
+ * twice with the colors swapped, so neither engine gets the better side of
+ * an opening more often.
+ *
+ * <p>
+ * The standing of every engine against every opponent and against the
+ * whole field is printed as CSV: the wins, losses and draws, the share of
+ * the points, the Elo difference that share implies with its 95% error,
+ * and the average nodes and milliseconds the engine spent per move.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class Tournament {
+
+	/** The name of the opponent in the standing against the whole field. */
+	public static final String FIELD = "all";
+
+	/** The header of the CSV of the standings. */
+	public static final String HEADER = "engine,opponent,depth,time_ms,"
+			+ "threads,eval,games,wins,losses,draws,score,elo,elo_error,"
+			+ "nodes_per_move,ms_per_move";
+
+	/** Number of rows of the board the games are played on. */
+	private static final int ROWS = 6;
+
+	/** Number of columns of the board the games are played on. */
+	private static final int COLS = 7;
+
+	/** How many games per thread may be in flight at once. */
+	private static final int WINDOW_PER_THREAD = 4;
+
+	/** How many random plies each game starts with by default. */
+	private static final int DEFAULT_OPENING_PLIES = 2;
+
+	/** How many megabytes the table of each engine uses by default. */
+	private static final int DEFAULT_TABLE_SIZE = 4;
+
+	/** The z value of a 95% confidence interval. */
+	private static final double Z_95 = 1.96;
+
+	/** The engines that take part. */
+	private final Engine[] engines;
+
+	/** How many games each pair of engines plays. */
+	private final int gamesPerPair;
+
+	/** How many random plies each game starts with. */
+	private final int openingPlies;
+
+	/** How many megabytes the table of each engine uses. */
+	private final int tableSize;
+
+	/** The seed the random openings are drawn from. */
+	private final long seed;
+
+	/** The pool the games are played on. */
+	private final ExecutorService pool;
+
+	/** The number of threads in the pool. */
+	private final int threads;
+
+	/** The searches of every engine on each thread of the pool. */
+	private final ThreadLocal<Search[]> searches;
+
+	/** Every search that was created, so their threads can be stopped. */
+	private final List<Search> created =
+			Collections.synchronizedList(new ArrayList<Search>());
+
+	/**
+	 * This class is the AI settings of one engine.
+	 */
+	public static final class Engine {
+
+		/** The name the engine is reported under. */
+		private final String name;
+
+		/** How many plies the engine looks ahead. */
+		private final int depth;
+
+		/** How many milliseconds the engine may think per move. */
+		private final long timeLimit;
+
+		/** How many threads the engine searches with. */
+		private final int threads;
+
+		/** Whether leaves are scored by the ThreatEvaluator. */
+		private final boolean evaluated;
+
+		/**
+		 * Constructor that instantiates new engine settings.
+		 *
+		 * @param name
+		 *            The name the engine is reported under
+		 * @param depth
+		 *            How many plies the engine looks ahead
+		 * @param timeLimit
+		 *            How many milliseconds the engine may think per move
+		 * @param threads
+		 *            How many threads the engine searches with
+		 * @param evaluated
+		 *            Whether leaves are scored by the ThreatEvaluator
+		 */
+		public Engine(final String name, final int depth,
+				final long timeLimit, final int threads,
+				final boolean evaluated) {
+			if (depth < 1 || timeLimit < 1 || threads < 1) {
+				throw new IllegalArgumentException("Engine " + name
+						+ " needs a depth, time and threads of at least 1");
+			}
+			this.name = name;
+			this.depth = depth;
+			this.timeLimit = timeLimit;
+			this.threads = threads;
+			this.evaluated = evaluated;
+		}
+
+		/**
+		 * Method that reads engine settings such as
+		 * "d8:depth=8,time=500,threads=1,eval=threat". The name and every
+		 * setting may be left out, and settings that are left out are the
+		 * defaults of the game.
+		 *
+		 * @param spec
+		 *            The settings
+		 * @return Engine The engine
+		 */
+		public static Engine parse(final String spec) {
+			int colon = spec.indexOf(':');
+			String name = colon < 0 ? spec : spec.substring(0, colon);
+			String settings = colon < 0 ? "" : spec.substring(colon + 1);
+			int depth = ConnectFourGame.DEFAULT_SEARCH_DEPTH;
+			long time = ConnectFourGame.DEFAULT_SEARCH_TIME;
+			int threads = 1;
+			boolean evaluated = true;
+			for (String setting : settings.split(",")) {
+				if (setting.isEmpty()) {
+					continue;
+				}
+				int equals = setting.indexOf('=');
+				String key = equals < 0 ? setting
+						: setting.substring(0, equals);
+				String value = equals < 0 ? "" : setting.substring(equals + 1);
+				switch (key) {
+				case "depth":
+					depth = Integer.parseInt(value);
+					break;
+				case "time":
+					time = Long.parseLong(value);
+					break;
+				case "threads":
+					threads = Integer.parseInt(value);
+					break;
+				case "eval":
+					if (!value.equals("threat") && !value.equals("none")) {
+						throw new IllegalArgumentException("Unknown "
+								+ "evaluator " + value);
+					}
+					evaluated = value.equals("threat");
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown setting "
+							+ key + " of engine " + name);
+				}
+			}
+			return new Engine(name, depth, time, threads, evaluated);
+		}
+
+		/**
+		 * Getter method that returns the name of the engine.
+		 *
+		 * @return String The name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Getter method that returns how many plies the engine looks
+		 * ahead.
+		 *
+		 * @return int The depth
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Getter method that returns how long the engine may think per
+		 * move.
+		 *
+		 * @return long The time limit in milliseconds
+		 */
+		public long getTimeLimit() {
+			return timeLimit;
+		}
+
+		/**
+		 * Getter method that returns how many threads the engine searches
+		 * with.
+		 *
+		 * @return int The number of threads
+		 */
+		public int getThreads() {
+			return threads;
+		}
+
+		/**
+		 * Getter method that returns whether leaves are scored by the
+		 * ThreatEvaluator, or all score zero.
+		 *
+		 * @return boolean If the engine evaluates leaves
+		 */
+		public boolean isEvaluated() {
+			return evaluated;
+		}
+	}
+
+	/**
+	 * This class is how one engine did against one opponent, or against
+	 * the whole field.
+	 */
+	public static final class Standing {
+
+		/** The engine the standing is for. */
+		private final Engine engine;
+
+		/** The name of the opponent, or FIELD. */
+		private final String opponent;
+
+		/** How many games the engine won. */
+		private int wins;
+
+		/** How many games the engine lost. */
+		private int losses;
+
+		/** How many games were drawn. */
+		private int draws;
+
+		/** How many moves the engine searched. */
+		private long moves;
+
+		/** How many nodes the engine searched in all. */
+		private long nodes;
+
+		/** How many nanoseconds the engine searched in all. */
+		private long nanos;
+
+		/**
+		 * Constructor that instantiates a new standing with no games.
+		 *
+		 * @param engine
+		 *            The engine the standing is for
+		 * @param opponent
+		 *            The name of the opponent, or FIELD
+		 */
+		Standing(final Engine engine, final String opponent) {
+			this.engine = engine;
+			this.opponent = opponent;
+		}
+
+		/**
+		 * Helper method that adds one game to the standing.
+		 *
+		 * @param outcome
+		 *            1 for a win, 0 for a draw and -1 for a loss
+		 * @param gameMoves
+		 *            How many moves the engine searched in the game
+		 * @param gameNodes
+		 *            How many nodes the engine searched in the game
+		 * @param gameNanos
+		 *            How many nanoseconds the engine searched in the game
+		 */
+		void add(final int outcome, final long gameMoves,
+				final long gameNodes, final long gameNanos) {
+			if (outcome > 0) {
+				wins++;
+			} else if (outcome < 0) {
+				losses++;
+			} else {
+				draws++;
+			}
+			moves += gameMoves;
+			nodes += gameNodes;
+			nanos += gameNanos;
+		}
+
+		/**
+		 * Getter method that returns the engine the standing is for.
+		 *
+		 * @return Engine The engine
+		 */
+		public Engine getEngine() {
+			return engine;
+		}
+
+		/**
+		 * Getter method that returns who the engine played.
+		 *
+		 * @return String The name of the opponent, or FIELD
+		 */
+		public String getOpponent() {
+			return opponent;
+		}
+
+		/**
+		 * Getter method that returns how many games were played.
+		 *
+		 * @return int The number of games
+		 */
+		public int getGames() {
+			return wins + losses + draws;
+		}
+
+		/**
+		 * Getter method that returns how many games the engine won.
+		 *
+		 * @return int The number of wins
+		 */
+		public int getWins() {
+			return wins;
+		}
+
+		/**
+		 * Getter method that returns how many games the engine lost.
+		 *
+		 * @return int The number of losses
+		 */
+		public int getLosses() {
+			return losses;
+		}
+
+		/**
+		 * Getter method that returns how many games were drawn.
+		 *
+		 * @return int The number of draws
+		 */
+		public int getDraws() {
+			return draws;
+		}
+
+		/**
+		 * Getter method that returns the share of the points the engine
+		 * scored, counting a draw as half a win.
+		 *
+		 * @return double The score between 0 and 1
+		 */
+		public double getScore() {
+			int games = getGames();
+			return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+		}
+
+		/**
+		 * Getter method that returns how many Elo points stronger the
+		 * engine is than its opponent, judging by its score.
+		 *
+		 * @return double The Elo difference, which is infinite if the
+		 *         engine won or lost every game
+		 */
+		public double getElo() {
+			return toElo(getScore());
+		}
+
+		/**
+		 * Getter method that returns the error of the Elo difference,
+		 * which is half the width of its 95% confidence interval.
+		 *
+		 * @return double The error in Elo points
+		 */
+		public double getEloError() {
+			int games = getGames();
+			if (games == 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			double score = getScore();
+			double variance = (wins * Math.pow(1 - score, 2)
+					+ draws * Math.pow(0.5 - score, 2)
+					+ losses * Math.pow(score, 2)) / games;
+			double error = Z_95 * Math.sqrt(variance / games);
+			return (toElo(score + error) - toElo(score - error)) / 2;
+		}
+
+		/**
+		 * Getter method that returns how many nodes the engine searched
+		 * per move.
+		 *
+		 * @return double The average number of nodes
+		 */
+		public double getNodesPerMove() {
+			return moves == 0 ? 0 : (double) nodes / moves;
+		}
+
+		/**
+		 * Getter method that returns how long the engine searched per
+		 * move.
+		 *
+		 * @return double The average time in milliseconds
+		 */
+		public double getMillisPerMove() {
+			return moves == 0 ? 0 : nanos / 1e6 / moves;
+		}
+
+		/**
+		 * Method that formats the standing as a line of CSV under HEADER.
+		 *
+		 * @return String The line
+		 */
+		public String toCsv() {
+			return String.format("%s,%s,%d,%d,%d,%s,%d,%d,%d,%d,%.3f,%.0f,"
+					+ "%.0f,%.0f,%.3f", engine.getName(), opponent,
+					engine.getDepth(), engine.getTimeLimit(),
+					engine.getThreads(),
+					engine.isEvaluated() ? "threat" : "none", getGames(),
+					wins, losses, draws, getScore(), getElo(), getEloError(),
+					getNodesPerMove(), getMillisPerMove());
+		}
+	}
+
+	/**
+	 * This class is how one game between two engines went.
+	 */
+	private static final class Game {
+
+		/** The engines, the one that moved first at index zero. */
+		private final int[] engines = new int[2];
+
+		/** The index of the engine that won, or -1 for a draw. */
+		private int winner = -1;
+
+		/** How many moves each engine searched. */
+		private final long[] moves = new long[2];
+
+		/** How many nodes each engine searched. */
+		private final long[] nodes = new long[2];
+
+		/** How many nanoseconds each engine searched. */
+		private final long[] nanos = new long[2];
+	}
+
+	/**
+	 * This class is the search of one engine on one thread.
+	 */
+	private static final class Search {
+
+		/** The search on the calling thread. */
+		private final Negamax primary;
+
+		/** The search over every thread of the engine. */
+		private final ParallelSearch parallel;
+
+		/**
+		 * Constructor that instantiates a new search for an engine.
+		 *
+		 * @param engine
+		 *            The settings of the engine
+		 * @param tableSize
+		 *            How many megabytes the table uses
+		 */
+		Search(final Engine engine, final int tableSize) {
+			primary = new Negamax(engine.getDepth(), engine.getTimeLimit());
+			primary.setTranspositionTable(new TranspositionTable(tableSize));
+			primary.setKillerMoves(true);
+			primary.setHistoryHeuristic(true);
+			if (engine.isEvaluated()) {
+				primary.setEvaluator(new ThreatEvaluator());
+			}
+			parallel = new ParallelSearch(primary, engine.getThreads());
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new tournament with its threads.
+	 *
+	 * @param engines
+	 *            The engines that take part, at least two
+	 * @param gamesPerPair
+	 *            How many games each pair of engines plays, which is
+	 *            rounded up to an even number
+	 * @param threads
+	 *            How many games are played at once
+	 * @param openingPlies
+	 *            How many random plies each game starts with
+	 * @param tableSize
+	 *            How many megabytes the table of each engine uses
+	 * @param seed
+	 *            The seed the random openings are drawn from
+	 */
+	public Tournament(final Engine[] engines, final int gamesPerPair,
+			final int threads, final int openingPlies, final int tableSize,
+			final long seed) {
+		if (engines.length < 2) {
+			throw new IllegalArgumentException("A tournament needs at least "
+					+ "two engines");
+		}
+		if (gamesPerPair < 1 || threads < 1) {
+			throw new IllegalArgumentException("Games and threads must be "
+					+ "at least 1");
+		}
+		this.engines = engines.clone();
+		this.gamesPerPair = gamesPerPair + gamesPerPair % 2;
+		this.threads = threads;
+		this.openingPlies = openingPlies;
+		this.tableSize = tableSize;
+		this.seed = seed;
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Tournament");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.searches = ThreadLocal.withInitial(() -> {
+			Search[] perEngine = new Search[this.engines.length];
+			for (int i = 0; i < perEngine.length; i++) {
+				perEngine[i] = new Search(this.engines[i], tableSize);
+				created.add(perEngine[i]);
+			}
+			return perEngine;
+		});
+	}
+
+	/**
+	 * Main method that plays a tournament between the engines given on the
+	 * command line and prints the standings as CSV. The progress and a
+	 * summary are printed to standard error.
+	 *
+	 * @param args
+	 *            The games per pair, the number of threads and two or more
+	 *            engines, as read by Engine.parse
+	 */
+	public static void main(final String[] args) {
+		if (args.length < 4) {
+			System.err.println("Usage: Tournament <games per pair> <threads> "
+					+ "<engine> <engine>...");
+			System.err.println("  engine: name:depth=6,time=1000,threads=1,"
+					+ "eval=threat|none");
+			return;
+		}
+		int gamesPerPair = Integer.parseInt(args[0]);
+		int threads = Integer.parseInt(args[1]);
+		Engine[] engines = new Engine[args.length - 2];
+		for (int i = 0; i < engines.length; i++) {
+			engines[i] = Engine.parse(args[i + 2]);
+		}
+		Tournament tournament = new Tournament(engines, gamesPerPair,
+				threads, DEFAULT_OPENING_PLIES, DEFAULT_TABLE_SIZE,
+				0x5EEDL);
+		long start = System.nanoTime();
+		List<Standing> standings;
+		try {
+			standings = tournament.run();
+		} finally {
+			tournament.shutdown();
+		}
+		System.out.println(HEADER);
+		for (Standing standing : standings) {
+			System.out.println(standing.toCsv());
+		}
+		for (Standing standing : standings) {
+			if (standing.getOpponent().equals(FIELD)) {
+				System.err.printf("%-12s %+5.0f +/- %3.0f Elo, %5.1f%% score,"
+						+ " %10.0f nodes/move, %8.3f ms/move%n",
+						standing.getEngine().getName(), standing.getElo(),
+						standing.getEloError(), standing.getScore() * 100,
+						standing.getNodesPerMove(),
+						standing.getMillisPerMove());
+			}
+		}
+		System.err.printf("%.1f s%n", (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Method that plays every game of the tournament.
+	 *
+	 * @return List The standing of every engine against every opponent,
+	 *         followed by its standing against the whole field
+	 */
+	public List<Standing> run() {
+		int count = engines.length;
+		Standing[][] pairs = new Standing[count][count];
+		Standing[] field = new Standing[count];
+		for (int i = 0; i < count; i++) {
+			field[i] = new Standing(engines[i], FIELD);
+			for (int j = 0; j < count; j++) {
+				pairs[i][j] = new Standing(engines[i], engines[j].getName());
+			}
+		}
+
+		Deque<Future<Game>> pending = new ArrayDeque<Future<Game>>();
+		int window = threads * WINDOW_PER_THREAD;
+		try {
+			for (int i = 0; i < count; i++) {
+				for (int j = i + 1; j < count; j++) {
+					for (int game = 0; game < gamesPerPair; game++) {
+						final int first = game % 2 == 0 ? i : j;
+						final int second = first == i ? j : i;
+						final long opening = seed + ((long) i * count + j)
+								* gamesPerPair + game / 2;
+						pending.add(pool.submit(
+								() -> play(first, second, opening)));
+						if (pending.size() >= window) {
+							record(await(pending.poll()), pairs, field);
+						}
+					}
+				}
+			}
+			while (!pending.isEmpty()) {
+				record(await(pending.poll()), pairs, field);
+			}
+		} finally {
+			for (Future<Game> future : pending) {
+				future.cancel(false);
+			}
+		}
+
+		List<Standing> standings = new ArrayList<Standing>();
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < count; j++) {
+				if (i != j) {
+					standings.add(pairs[i][j]);
+				}
+			}
+			standings.add(field[i]);
+		}
+		return standings;
+	}
+
+	/**
+	 * Helper method that plays one game with the searches of the calling
+	 * thread. The tables of both engines are cleared first, so every game
+	 * starts out the way a new game against the AI does.
+	 *
+	 * @param first
+	 *            The index of the engine that moves first
+	 * @param second
+	 *            The index of the engine that moves second
+	 * @param opening
+	 *            The seed of the random opening
+	 * @return Game How the game went
+	 */
+	private Game play(final int first, final int second, final long opening) {
+		Search[] perEngine = searches.get();
+		Game game = new Game();
+		game.engines[0] = first;
+		game.engines[1] = second;
+		perEngine[first].primary.getTranspositionTable().clear();
+		perEngine[second].primary.getTranspositionTable().clear();
+
+		Board board = Board.create(ROWS, COLS, Bitboard.CONNECT_FOUR);
+		Random random = new Random(opening);
+		Player player = Player.PLAYER1;
+		for (int ply = 0; ply < openingPlies && !board.isFull(); ply++) {
+			int col;
+			do {
+				col = random.nextInt(COLS);
+			} while (!board.canPlay(col));
+			board.play(col, player);
+			if (board.hasWon(player)) {
+				board.undo(col);
+				break;
+			}
+			player = player.next();
+		}
+
+		while (!board.isFull()) {
+			int side = player == Player.PLAYER1 ? 0 : 1;
+			Search search = perEngine[game.engines[side]];
+			long start = System.nanoTime();
+			Move move = search.parallel.search(board, player);
+			game.nanos[side] += System.nanoTime() - start;
+			game.nodes[side] += search.parallel.getNodes();
+			game.moves[side]++;
+			board.play(move.getCol(), player);
+			if (board.hasWon(player)) {
+				game.winner = side;
+				break;
+			}
+			player = player.next();
+		}
+		return game;
+	}
+
+	/**
+	 * Helper method that adds a game to the standings of both engines.
+	 *
+	 * @param game
+	 *            How the game went
+	 * @param pairs
+	 *            The standing of every engine against every opponent
+	 * @param field
+	 *            The standing of every engine against the whole field
+	 */
+	private static void record(final Game game, final Standing[][] pairs,
+			final Standing[] field) {
+		for (int side = 0; side < 2; side++) {
+			int engine = game.engines[side];
+			int opponent = game.engines[1 - side];
+			int outcome = game.winner < 0 ? 0 : game.winner == side ? 1 : -1;
+			pairs[engine][opponent].add(outcome, game.moves[side],
+					game.nodes[side], game.nanos[side]);
+			field[engine].add(outcome, game.moves[side], game.nodes[side],
+					game.nanos[side]);
+		}
+	}
+
+	/**
+	 * Helper method that waits for a game to finish.
+	 *
+	 * @param future
+	 *            The game
+	 * @return Game How the game went
+	 */
+	private static Game await(final Future<Game> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while playing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Game failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Helper method that turns a score into the Elo difference it implies.
+	 *
+	 * @param score
+	 *            The share of the points, between 0 and 1
+	 * @return double The Elo difference
+	 */
+	private static double toElo(final double score) {
+		if (score <= 0) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (score >= 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	/**
+	 * Method that stops the threads of the tournament and of every engine.
+	 * It cannot be used afterwards.
+	 *
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+		synchronized (created) {
+			for (Search search : created) {
+				search.parallel.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package connectfour;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers the results of positions the AI has already searched,
+ * so that a position reached again through a different order of moves does
+ * not have to be searched a second time. It is a fixed size table of
+ * entries that are looked up by the Zobrist hash of a position. Each entry
+ * is packed into two longs, so the memory used by a table never grows after
+ * it is created. A table can be shared by several searches running on
+ * different threads without any locking, since a torn entry never matches
+ * the key it is looked up with. Each search counts its own hits and misses,
+ * so the threads do not fight over a shared counter.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class TranspositionTable {
+
+	/** The stored score is the exact score of the position. */
+	public static final int EXACT = 1;
+
+	/** The stored score is a lower bound of the score of the position. */
+	public static final int LOWER_BOUND = 2;
+
+	/** The stored score is an upper bound of the score of the position. */
+	public static final int UPPER_BOUND = 3;
+
+	/** Value stored as the best move when a position has no best move. */
+	public static final int NO_MOVE = 0xFF;
+
+	/** How many bytes a single entry takes up. */
+	private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+	/** The hash of every entry, xor-ed with the data of the entry. */
+	private final long[] keys;
+
+	/** The packed score, bound, depth, best move and age of every entry. */
+	private final long[] data;
+
+	/** Mask that turns a hash into an index of the table. */
+	private final int indexMask;
+
+	/** Age of the current search, used to replace entries of old searches. */
+	private int generation;
+
+	/**
+	 * Constructor that instantiates a new table that uses at most the
+	 * given amount of memory. The number of entries is rounded down to a
+	 * power of two.
+	 *
+	 * @param megabytes
+	 *            How many megabytes the table may use
+	 */
+	public TranspositionTable(final int megabytes) {
+		if (megabytes < 1) {
+			throw new IllegalArgumentException("Table size must be at least "
+					+ "1 megabyte");
+		}
+		long entries = Long.highestOneBit((long) megabytes * (1 << 20)
+				/ ENTRY_BYTES);
+		entries = Math.min(entries, 1 << 30);
+		keys = new long[(int) entries];
+		data = new long[(int) entries];
+		indexMask = (int) entries - 1;
+	}
+
+	/**
+	 * Method that looks up a position in the table. The key and the data
+	 * of an entry are stored xor-ed together, so an entry that was only
+	 * half written by another thread never matches a key.
+	 *
+	 * @param key
+	 *            The hash of the position
+	 * @return long The packed data of the entry, or zero if the position
+	 *         is not in the table
+	 */
+	public long probe(final long key) {
+		int index = (int) key & indexMask;
+		long entry = data[index];
+		if (entry != 0 && (keys[index] ^ entry) == key) {
+			return entry;
+		}
+		return 0;
+	}
+
+	/**
+	 * Method that stores the result of a search in the table. An existing
+	 * entry is only replaced if it belongs to the same position, comes
+	 * from an older search, or was searched less deeply.
+	 *
+	 * @param key
+	 *            The hash of the position
+	 * @param score
+	 *            The score of the position
+	 * @param depth
+	 *            How many plies deep the position was searched
+	 * @param bound
+	 *            Whether the score is EXACT, a LOWER_BOUND or an
+	 *            UPPER_BOUND
+	 * @param move
+	 *            The column of the best move, or NO_MOVE
+	 */
+	public void store(final long key, final int score, final int depth,
+			final int bound, final int move) {
+		int index = (int) key & indexMask;
+		long old = data[index];
+		if (old != 0 && (keys[index] ^ old) != key
+				&& getGeneration(old) == (generation & 0xFF)
+				&& getDepth(old) > depth) {
+			return;
+		}
+		long entry = (score & 0xFFFFL)
+				| (long) Math.min(depth, 0xFF) << 16
+				| (long) (move & 0xFF) << 24
+				| (long) bound << 32
+				| (long) (generation & 0xFF) << 40;
+		data[index] = entry;
+		keys[index] = key ^ entry;
+	}
+
+	/**
+	 * Method that is called before every search so that entries left
+	 * over from earlier searches are replaced first.
+	 *
+	 */
+	public void newSearch() {
+		generation++;
+	}
+
+	/**
+	 * Method that removes every entry from the table.
+	 *
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+
+	/**
+	 * Getter method that returns the score stored in an entry.
+	 *
+	 * @param entry
+	 *            The packed data of an entry
+	 * @return int The stored score
+	 */
+	public static int getScore(final long entry) {
+		return (short) entry;
+	}
+
+	/**
+	 * Getter method that returns the depth stored in an entry.
+	 *
+	 * @param entry
+	 *            The packed data of an entry
+	 * @return int How many plies deep the position was searched
+	 */
+	public static int getDepth(final long entry) {
+		return (int) (entry >>> 16) & 0xFF;
+	}
+
+	/**
+	 * Getter method that returns the best move stored in an entry.
+	 *
+	 * @param entry
+	 *            The packed data of an entry
+	 * @return int The column of the best move, or NO_MOVE
+	 */
+	public static int getMove(final long entry) {
+		return (int) (entry >>> 24) & 0xFF;
+	}
+
+	/**
+	 * Getter method that returns what kind of bound the score of an entry
+	 * is.
+	 *
+	 * @param entry
+	 *            The packed data of an entry
+	 * @return int EXACT, LOWER_BOUND or UPPER_BOUND
+	 */
+	public static int getBound(final long entry) {
+		return (int) (entry >>> 32) & 0x3;
+	}
+
+	/**
+	 * Helper method that returns the age of an entry.
+	 *
+	 * @param entry
+	 *            The packed data of an entry
+	 * @return int The search the entry was stored in
+	 */
+	private static int getGeneration(final long entry) {
+		return (int) (entry >>> 40) & 0xFF;
+	}
+
+	/**
+	 * Getter method that returns how many entries the table holds.
+	 *
+	 * @return int The number of entries
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,261 @@
+package connectfour.server;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import connectfour.Player;
+
+/**
+ * This class is a client of a game server. Requests are sent right away
+ * from the calling thread, and the messages of the server are read on a
+ * thread of the client and passed to a listener, so a user interface can
+ * play a remote game the same way it plays a local one.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class GameClient implements Closeable {
+
+	/**
+	 * This interface receives the messages of the server. Every method is
+	 * called on the reading thread of the client, one message at a time.
+	 */
+	public interface Listener {
+
+		/**
+		 * Method that is called when a game was created and waits for an
+		 * opponent.
+		 *
+		 * @param gameId
+		 *            The number the opponent joins the game with
+		 */
+		void waiting(int gameId);
+
+		/**
+		 * Method that is called when a game starts.
+		 *
+		 * @param gameId
+		 *            The number of the game
+		 * @param player
+		 *            The player this client plays as
+		 * @param rows
+		 *            The number of rows on the board
+		 * @param cols
+		 *            The number of columns on the board
+		 * @param connect
+		 *            How many pieces in a row win the game
+		 */
+		void started(int gameId, Player player, int rows, int cols,
+				int connect);
+
+		/**
+		 * Method that is called when either player drops a piece.
+		 *
+		 * @param player
+		 *            The player who dropped the piece
+		 * @param row
+		 *            The row the piece landed in, where row zero is the
+		 *            top of the board
+		 * @param col
+		 *            The column the piece was dropped in
+		 */
+		void moved(Player player, int row, int col);
+
+		/**
+		 * Method that is called when the game is over.
+		 *
+		 * @param result
+		 *            Protocol.RESULT_WON, RESULT_TIE or RESULT_ABANDONED
+		 * @param winner
+		 *            The player who won, or NONE after a tie
+		 */
+		void gameOver(int result, Player winner);
+
+		/**
+		 * Method that is called when the server could not carry out a
+		 * request.
+		 *
+		 * @param code
+		 *            One of the Protocol.ERROR codes
+		 */
+		void error(int code);
+
+		/**
+		 * Method that is called once when the connection is closed, by
+		 * either side.
+		 *
+		 */
+		void disconnected();
+	}
+
+	/** The socket connected to the server. */
+	private final Socket socket;
+
+	/** The stream requests are written to. */
+	private final OutputStream out;
+
+	/** The listener the messages of the server are passed to. */
+	private final Listener listener;
+
+	/**
+	 * Constructor that instantiates a new client and connects it to a
+	 * server.
+	 *
+	 * @param host
+	 *            The host name of the server
+	 * @param port
+	 *            The port of the server
+	 * @param listener
+	 *            The listener the messages of the server are passed to
+	 * @throws IOException
+	 *             If the server cannot be reached
+	 */
+	public GameClient(final String host, final int port,
+			final Listener listener) throws IOException {
+		this.socket = new Socket();
+		socket.setTcpNoDelay(true);
+		socket.connect(new InetSocketAddress(host, port));
+		this.out = socket.getOutputStream();
+		this.listener = listener;
+		Thread reader = new Thread(this::readMessages, "GameClient reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Method that creates a new game on the server.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param ai
+	 *            Whether or not the server AI is the opponent
+	 * @param moveSecond
+	 *            Whether or not this client moves second
+	 * @throws IOException
+	 *             If the request cannot be sent
+	 */
+	public void newGame(final int rows, final int cols, final int connect,
+			final boolean ai, final boolean moveSecond) throws IOException {
+		int flags = (ai ? Protocol.FLAG_AI : 0)
+				| (moveSecond ? Protocol.FLAG_SECOND : 0);
+		send(Protocol.newGame(rows, cols, connect, flags));
+	}
+
+	/**
+	 * Method that joins a game another client created.
+	 *
+	 * @param gameId
+	 *            The number of the game
+	 * @throws IOException
+	 *             If the request cannot be sent
+	 */
+	public void join(final int gameId) throws IOException {
+		send(Protocol.join(gameId));
+	}
+
+	/**
+	 * Method that drops a piece into a column. The move is only made once
+	 * the server answers with a move.
+	 *
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @throws IOException
+	 *             If the request cannot be sent
+	 */
+	public void move(final int col) throws IOException {
+		send(Protocol.move(col));
+	}
+
+	/**
+	 * Method that gives up the current game.
+	 *
+	 * @throws IOException
+	 *             If the request cannot be sent
+	 */
+	public void leave() throws IOException {
+		send(Protocol.leave());
+	}
+
+	/**
+	 * Helper method that writes a request to the server.
+	 *
+	 * @param message
+	 *            The encoded request
+	 * @throws IOException
+	 *             If the request cannot be sent
+	 */
+	private synchronized void send(final byte[] message) throws IOException {
+		out.write(message);
+		out.flush();
+	}
+
+	/**
+	 * Helper method that reads the messages of the server until the
+	 * connection is closed and passes each of them to the listener.
+	 *
+	 */
+	private void readMessages() {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			while (true) {
+				byte type = in.readByte();
+				switch (type) {
+				case Protocol.WAITING:
+					listener.waiting(in.readInt());
+					break;
+				case Protocol.STARTED:
+					int gameId = in.readInt();
+					Player player = Protocol.toPlayer(in.readUnsignedByte());
+					int rows = in.readUnsignedByte();
+					int cols = in.readUnsignedByte();
+					listener.started(gameId, player, rows, cols,
+							in.readUnsignedByte());
+					break;
+				case Protocol.MOVED:
+					Player mover = Protocol.toPlayer(in.readUnsignedByte());
+					int row = in.readUnsignedByte();
+					listener.moved(mover, row, in.readUnsignedByte());
+					break;
+				case Protocol.GAME_OVER:
+					int result = in.readUnsignedByte();
+					listener.gameOver(result,
+							Protocol.toPlayer(in.readUnsignedByte()));
+					break;
+				case Protocol.ERROR:
+					listener.error(in.readUnsignedByte());
+					break;
+				default:
+					throw new IOException("Unknown message " + type);
+				}
+			}
+		} catch (IOException e) {
+			// The connection was closed by either side or broke.
+		} finally {
+			close();
+			listener.disconnected();
+		}
+	}
+
+	/**
+	 * Method that closes the connection to the server.
+	 *
+	 */
+	@Override
+	public void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// The socket is closed either way.
+		}
+	}
+}
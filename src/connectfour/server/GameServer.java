@@ -0,0 +1,456 @@
+package connectfour.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+
+import connectfour.EngineListener;
+import connectfour.EngineMetrics;
+import connectfour.TranspositionTable;
+
+/**
+ * This class is a game server that hosts many games at once on a single
+ * thread. Every client connection is non-blocking and registered with one
+ * Selector, so an idle client costs a small object and two tiny buffers
+ * rather than a thread, and one server can hold tens of thousands of
+ * connections. AI moves are searched on a small pool of threads and handed
+ * back to the selector thread to be sent.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class GameServer implements Runnable, Closeable {
+
+	/** The port the server listens on by default. */
+	public static final int DEFAULT_PORT = 4444;
+
+	/** How many milliseconds the AI thinks about a move by default. */
+	public static final long DEFAULT_AI_TIME = 200;
+
+	/** How many megabytes the shared transposition table uses. */
+	private static final int TABLE_SIZE = 64;
+
+	/** How long to stop accepting after accept failed. */
+	private static final long ACCEPT_RETRY_MILLIS = 100;
+
+	/** The selector every connection is registered with. */
+	private final Selector selector;
+
+	/** The channel new connections are accepted on. */
+	private final ServerSocketChannel serverChannel;
+
+	/** The selection key of the channel new connections arrive on. */
+	private final SelectionKey acceptKey;
+
+	/** Whether or not accepting is paused after it failed. */
+	private boolean acceptPaused;
+
+	/** When accepting is resumed, in nanoseconds. */
+	private long acceptResumesAt;
+
+	/** Whether or not the last accept failed, so a failure is logged once. */
+	private boolean acceptFailing;
+
+	/** The pool AI searches run on. */
+	private final ExecutorService aiPool;
+
+	/** The games and the rules of the protocol. */
+	private final Lobby lobby;
+
+	/** Connections with output that other threads queued for them. */
+	private final Queue<Connection> pendingWrites =
+			new ConcurrentLinkedQueue<Connection>();
+
+	/** The thread the selector runs on, once the server is running. */
+	private volatile Thread selectorThread;
+
+	/** Whether or not the server has been closed. */
+	private volatile boolean closed;
+
+	/** How many clients are connected. */
+	private int connections;
+
+	/**
+	 * This class is one client connection. Messages that cannot be
+	 * written right away are kept in an output buffer until the channel
+	 * can take them.
+	 */
+	private final class Connection extends Peer {
+
+		/** The channel of the client. */
+		private final SocketChannel channel;
+
+		/** The selection key of the channel. */
+		private SelectionKey key;
+
+		/** Bytes read from the client that are not a whole message yet. */
+		private final ByteBuffer in = ByteBuffer.allocate(
+				Protocol.MAX_LENGTH * 4);
+
+		/** Bytes waiting to be written to the client, or null. */
+		private ByteBuffer out;
+
+		/**
+		 * Constructor that instantiates a new connection.
+		 *
+		 * @param channel
+		 *            The channel of the client
+		 */
+		Connection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		void send(final byte[] message) {
+			synchronized (this) {
+				if (out == null) {
+					out = ByteBuffer.allocate(Math.max(Protocol.MAX_LENGTH * 4,
+							message.length));
+				} else if (out.remaining() < message.length) {
+					ByteBuffer larger = ByteBuffer.allocate(
+							(out.capacity() + message.length) * 2);
+					out.flip();
+					larger.put(out);
+					out = larger;
+				}
+				out.put(message);
+			}
+			if (Thread.currentThread() == selectorThread) {
+				flush();
+			} else {
+				pendingWrites.add(this);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Method that writes as much of the output as the channel takes,
+		 * and asks the selector to say when it can take the rest.
+		 *
+		 */
+		void flush() {
+			boolean done;
+			try {
+				synchronized (this) {
+					if (out == null) {
+						return;
+					}
+					out.flip();
+					channel.write(out);
+					done = !out.hasRemaining();
+					if (done) {
+						out = null;
+					} else {
+						out.compact();
+					}
+				}
+			} catch (IOException e) {
+				disconnect(this);
+				return;
+			}
+			if (key.isValid()) {
+				key.interestOps(done ? SelectionKey.OP_READ
+						: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new server listening on an address.
+	 * The server does not accept connections until it is run.
+	 *
+	 * @param address
+	 *            The address to listen on, where port zero picks any free
+	 *            port
+	 * @param aiThreads
+	 *            How many threads AI searches run on
+	 * @param aiTime
+	 *            How many milliseconds the AI thinks about a move
+	 * @throws IOException
+	 *             If the server cannot listen on the address
+	 */
+	public GameServer(final InetSocketAddress address, final int aiThreads,
+			final long aiTime) throws IOException {
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address, 1024);
+		this.acceptKey = serverChannel.register(selector,
+				SelectionKey.OP_ACCEPT);
+		this.aiPool = Executors.newFixedThreadPool(aiThreads);
+		this.lobby = new Lobby(aiPool, aiTime,
+				new TranspositionTable(TABLE_SIZE));
+	}
+
+	/**
+	 * Main method that runs a server until the process is stopped.
+	 *
+	 * @param args
+	 *            Optionally the port, the number of AI threads and the
+	 *            milliseconds the AI thinks about a move
+	 * @throws IOException
+	 *             If the server cannot listen on the port
+	 * @throws JMException
+	 *             If the engine metrics cannot be registered
+	 */
+	public static void main(final String[] args) throws IOException,
+			JMException {
+		int port = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_PORT;
+		int aiThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		long aiTime = args.length > 2 ? Long.parseLong(args[2])
+				: DEFAULT_AI_TIME;
+		GameServer server = new GameServer(new InetSocketAddress(port),
+				aiThreads, aiTime);
+		EngineMetrics metrics = new EngineMetrics();
+		metrics.register("GameServer");
+		server.setEngineListener(metrics);
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+
+	/**
+	 * Method that runs the selector loop on the calling thread until the
+	 * server is closed.
+	 *
+	 */
+	@Override
+	public void run() {
+		selectorThread = Thread.currentThread();
+		try {
+			while (!closed) {
+				if (acceptPaused) {
+					long wait = (acceptResumesAt - System.nanoTime()) / 1000000;
+					selector.select(Math.max(wait, 1));
+					if (System.nanoTime() - acceptResumesAt >= 0) {
+						acceptPaused = false;
+						acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+					}
+				} else {
+					selector.select();
+				}
+				for (Connection connection = pendingWrites.poll();
+						connection != null;
+						connection = pendingWrites.poll()) {
+					connection.flush();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						Connection connection = (Connection) key.attachment();
+						if (key.isWritable()) {
+							connection.flush();
+						}
+						if (key.isValid() && key.isReadable()) {
+							read(connection);
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Selector failed", e);
+		} finally {
+			closeChannels();
+		}
+	}
+
+	/**
+	 * Helper method that accepts every connection that is waiting. A
+	 * connection that fails to be set up, such as one reset by its client,
+	 * is dropped on its own. If accepting itself fails, such as when the
+	 * process is out of file descriptors, the failure is logged and the
+	 * server stops accepting for a moment, rather than being woken by the
+	 * same waiting connection over and over.
+	 *
+	 */
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			} catch (IOException e) {
+				if (!acceptFailing) {
+					System.err.println("Accept failed, retrying: " + e);
+					acceptFailing = true;
+				}
+				acceptPaused = true;
+				acceptResumesAt = System.nanoTime()
+						+ ACCEPT_RETRY_MILLIS * 1000000L;
+				acceptKey.interestOps(0);
+				return;
+			}
+			acceptFailing = false;
+			if (channel == null) {
+				return;
+			}
+			try {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Connection connection = new Connection(channel);
+				connection.key = channel.register(selector,
+						SelectionKey.OP_READ, connection);
+				connections++;
+			} catch (IOException e) {
+				try {
+					channel.close();
+				} catch (IOException closeFailed) {
+					// The connection is gone either way.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method that reads from a connection and carries out every
+	 * whole message that arrived. A client that sends a message that is
+	 * not part of the protocol is disconnected.
+	 *
+	 * @param connection
+	 *            The connection that can be read
+	 */
+	private void read(final Connection connection) {
+		ByteBuffer in = connection.in;
+		int read;
+		try {
+			read = connection.channel.read(in);
+		} catch (IOException e) {
+			read = -1;
+		}
+		if (read < 0) {
+			disconnect(connection);
+			return;
+		}
+		in.flip();
+		while (in.hasRemaining()) {
+			int length = Protocol.getLength(in.get(in.position()));
+			if (length < 0) {
+				connection.send(Protocol.error(Protocol.ERROR_BAD_MESSAGE));
+				disconnect(connection);
+				return;
+			}
+			if (in.remaining() < length) {
+				break;
+			}
+			if (!lobby.handle(connection, in)) {
+				disconnect(connection);
+				return;
+			}
+			in.position(in.position() + length);
+		}
+		in.compact();
+	}
+
+	/**
+	 * Helper method that closes a connection and takes its client out of
+	 * its game.
+	 *
+	 * @param connection
+	 *            The connection
+	 */
+	private void disconnect(final Connection connection) {
+		if (!connection.key.isValid()) {
+			return;
+		}
+		connection.key.cancel();
+		connections--;
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// The connection is gone either way.
+		}
+		lobby.disconnected(connection);
+	}
+
+	/**
+	 * Getter method that returns the port the server listens on.
+	 *
+	 * @return int The port
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Setter method that sets the listener every game that is created
+	 * from now on reports the cost of its moves to, such as EngineMetrics.
+	 *
+	 * @param engineListener
+	 *            The listener, or null to measure nothing
+	 */
+	public void setEngineListener(final EngineListener engineListener) {
+		lobby.setEngineListener(engineListener);
+	}
+
+	/**
+	 * Getter method that returns how many games have not ended yet.
+	 *
+	 * @return int The number of games
+	 */
+	public int getGames() {
+		return lobby.getGames();
+	}
+
+	/**
+	 * Getter method that returns how many clients are connected. This is
+	 * only up to date when read on the selector thread.
+	 *
+	 * @return int The number of connections
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * Method that stops the server. The selector thread closes every
+	 * connection on its way out, or the connections are closed right away
+	 * if the server was never run.
+	 *
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		aiPool.shutdownNow();
+		if (selectorThread == null) {
+			closeChannels();
+		} else {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Helper method that closes every connection, the server channel and
+	 * the selector.
+	 *
+	 */
+	private void closeChannels() {
+		try {
+			for (SelectionKey key : selector.keys()) {
+				key.channel().close();
+			}
+			selector.close();
+		} catch (IOException e) {
+			// The server is going away either way.
+		}
+	}
+}
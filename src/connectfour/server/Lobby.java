@@ -0,0 +1,372 @@
+package connectfour.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import connectfour.EngineListener;
+import connectfour.GameEngine;
+import connectfour.GameStatus;
+import connectfour.Move;
+import connectfour.Player;
+import connectfour.TranspositionTable;
+
+/**
+ * This class holds every game a server hosts and carries out the messages
+ * its clients send. It does not know how messages are read or written, so
+ * the same lobby serves clients on a selector thread or on a thread each.
+ * Each game is locked on its own, so clients in different games never wait
+ * on each other. AI moves are searched on a separate executor and played
+ * when the search is done, so a search never holds up the thread that
+ * reads the messages.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+final class Lobby {
+
+	/** Every game that has not ended, by its id. */
+	private final ConcurrentMap<Integer, Session> sessions =
+			new ConcurrentHashMap<Integer, Session>();
+
+	/** The id the next game gets. */
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	/** The executor AI searches run on. */
+	private final Executor aiExecutor;
+
+	/** How many milliseconds the AI may think about a move. */
+	private final long aiTime;
+
+	/**
+	 * The transposition table that every AI game shares, whatever the size
+	 * of its board. The search keys entries by the board size and win
+	 * condition as well, so games of different shapes never mix.
+	 */
+	private final TranspositionTable table;
+
+	/** Told what every move of every game costs, or null. */
+	private volatile EngineListener engineListener;
+
+	/**
+	 * Constructor that instantiates a new, empty lobby.
+	 *
+	 * @param aiExecutor
+	 *            The executor AI searches run on
+	 * @param aiTime
+	 *            How many milliseconds the AI may think about a move
+	 * @param table
+	 *            The transposition table that every AI game shares
+	 */
+	Lobby(final Executor aiExecutor, final long aiTime,
+			final TranspositionTable table) {
+		this.aiExecutor = aiExecutor;
+		this.aiTime = aiTime;
+		this.table = table;
+	}
+
+	/**
+	 * Method that carries out a message from a client.
+	 *
+	 * @param peer
+	 *            The client that sent the message
+	 * @param message
+	 *            A buffer holding the whole message from its position on
+	 * @return boolean If the message was part of the protocol
+	 */
+	boolean handle(final Peer peer, final ByteBuffer message) {
+		int start = message.position();
+		switch (message.get(start)) {
+		case Protocol.NEW_GAME:
+			newGame(peer, message.get(start + 1) & 0xFF,
+					message.get(start + 2) & 0xFF,
+					message.get(start + 3) & 0xFF, message.get(start + 4));
+			return true;
+		case Protocol.JOIN:
+			join(peer, message.getInt(start + 1));
+			return true;
+		case Protocol.MOVE:
+			move(peer, message.get(start + 1) & 0xFF);
+			return true;
+		case Protocol.LEAVE:
+			leave(peer);
+			return true;
+		default:
+			peer.send(Protocol.error(Protocol.ERROR_BAD_MESSAGE));
+			return false;
+		}
+	}
+
+	/**
+	 * Helper method that creates a new game and seats its creator.
+	 *
+	 * @param peer
+	 *            The client that creates the game
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param flags
+	 *            The NEW_GAME flags
+	 */
+	private void newGame(final Peer peer, final int rows, final int cols,
+			final int connect, final int flags) {
+		if (peer.getSession() != null) {
+			peer.send(Protocol.error(Protocol.ERROR_ALREADY_PLAYING));
+			return;
+		}
+		GameEngine engine;
+		try {
+			engine = new GameEngine(rows, cols, connect, Player.PLAYER1);
+			engine.getGame().setEngineListener(engineListener);
+		} catch (IllegalArgumentException e) {
+			peer.send(Protocol.error(Protocol.ERROR_BAD_BOARD));
+			return;
+		}
+		Player player = (flags & Protocol.FLAG_SECOND) != 0
+				? Player.PLAYER2 : Player.PLAYER1;
+		Player aiPlayer = Player.NONE;
+		if ((flags & Protocol.FLAG_AI) != 0) {
+			aiPlayer = player.next();
+			engine.getGame().setTranspositionTable(table);
+		}
+		Session session = new Session(nextId.getAndIncrement(), engine,
+				aiPlayer);
+		synchronized (session) {
+			session.setSeat(player, peer);
+			peer.seat(session, player);
+			sessions.put(session.getId(), session);
+			if (session.isStarted()) {
+				start(session);
+			} else {
+				peer.send(Protocol.waiting(session.getId()));
+			}
+		}
+	}
+
+	/**
+	 * Helper method that seats a client in the free seat of a game.
+	 *
+	 * @param peer
+	 *            The client that joins
+	 * @param id
+	 *            The id of the game
+	 */
+	private void join(final Peer peer, final int id) {
+		if (peer.getSession() != null) {
+			peer.send(Protocol.error(Protocol.ERROR_ALREADY_PLAYING));
+			return;
+		}
+		Session session = sessions.get(id);
+		if (session == null) {
+			peer.send(Protocol.error(Protocol.ERROR_NO_SUCH_GAME));
+			return;
+		}
+		synchronized (session) {
+			if (session.isOver() || session.isStarted()) {
+				peer.send(Protocol.error(Protocol.ERROR_GAME_FULL));
+				return;
+			}
+			Player player = session.getSeat(Player.PLAYER1) == null
+					? Player.PLAYER1 : Player.PLAYER2;
+			session.setSeat(player, peer);
+			peer.seat(session, player);
+			start(session);
+		}
+	}
+
+	/**
+	 * Helper method that tells every client in a game that it started,
+	 * and lets the AI move if it goes first.
+	 *
+	 * @param session
+	 *            The game, whose lock is held
+	 */
+	private void start(final Session session) {
+		GameEngine engine = session.getEngine();
+		for (Player player : new Player[] {Player.PLAYER1, Player.PLAYER2}) {
+			Peer peer = session.getSeat(player);
+			if (peer != null) {
+				peer.send(Protocol.started(session.getId(), player,
+						engine.getRows(), engine.getCols(),
+						engine.getConnect()));
+			}
+		}
+		if (session.isAiTurn()) {
+			think(session);
+		}
+	}
+
+	/**
+	 * Helper method that makes the move of a client.
+	 *
+	 * @param peer
+	 *            The client that moves
+	 * @param col
+	 *            The column the piece is dropped in
+	 */
+	private void move(final Peer peer, final int col) {
+		Session session = peer.getSession();
+		if (session == null) {
+			peer.send(Protocol.error(Protocol.ERROR_NOT_PLAYING));
+			return;
+		}
+		synchronized (session) {
+			if (session.isOver()) {
+				peer.send(Protocol.error(Protocol.ERROR_NOT_PLAYING));
+			} else if (!session.isStarted() || session.isThinking()
+					|| session.getEngine().getPlayer() != peer.getPlayer()) {
+				peer.send(Protocol.error(Protocol.ERROR_NOT_YOUR_TURN));
+			} else if (!session.getEngine().canPlay(col)) {
+				peer.send(Protocol.error(Protocol.ERROR_ILLEGAL_MOVE));
+			} else {
+				play(session, col);
+			}
+		}
+	}
+
+	/**
+	 * Helper method that plays a move in a game and tells its clients.
+	 * The game ends if the move won or filled the board, and otherwise the
+	 * AI is asked for its answer if it is its turn.
+	 *
+	 * @param session
+	 *            The game, whose lock is held
+	 * @param col
+	 *            The column the piece is dropped in
+	 */
+	private void play(final Session session, final int col) {
+		GameEngine engine = session.getEngine();
+		Player player = engine.getPlayer();
+		int row = engine.play(col);
+		session.broadcast(Protocol.moved(player, row, col));
+		if (engine.status() == GameStatus.Won) {
+			session.broadcast(Protocol.gameOver(Protocol.RESULT_WON, player));
+			end(session);
+		} else if (engine.status() == GameStatus.Tie) {
+			session.broadcast(Protocol.gameOver(Protocol.RESULT_TIE,
+					Player.NONE));
+			end(session);
+		} else if (session.isAiTurn()) {
+			think(session);
+		}
+	}
+
+	/**
+	 * Helper method that searches for the AI move of a game on the AI
+	 * executor. Clients cannot move while the AI is thinking, so the
+	 * engine is left alone until the search is done.
+	 *
+	 * @param session
+	 *            The game, whose lock is held
+	 */
+	private void think(final Session session) {
+		session.setThinking(true);
+		aiExecutor.execute(() -> {
+			Move move = session.getEngine().bestMove(aiTime);
+			synchronized (session) {
+				session.setThinking(false);
+				if (!session.isOver() && move != null) {
+					play(session, move.getCol());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Helper method that takes a client out of its game. The opponent, if
+	 * there is one, wins.
+	 *
+	 * @param peer
+	 *            The client that leaves
+	 */
+	private void leave(final Peer peer) {
+		Session session = peer.getSession();
+		if (session == null) {
+			peer.send(Protocol.error(Protocol.ERROR_NOT_PLAYING));
+			return;
+		}
+		abandon(session, peer);
+	}
+
+	/**
+	 * Method that takes a client that disconnected out of its game.
+	 *
+	 * @param peer
+	 *            The client that disconnected
+	 */
+	void disconnected(final Peer peer) {
+		Session session = peer.getSession();
+		if (session != null) {
+			abandon(session, peer);
+		}
+	}
+
+	/**
+	 * Helper method that ends a game because one of its clients left.
+	 *
+	 * @param session
+	 *            The game
+	 * @param peer
+	 *            The client that left
+	 */
+	private void abandon(final Session session, final Peer peer) {
+		synchronized (session) {
+			if (session.isOver()) {
+				return;
+			}
+			if (session.isThinking()) {
+				session.getEngine().getGame().stopSearch();
+			}
+			Player winner = peer.getPlayer().next();
+			Peer opponent = session.getSeat(winner);
+			if (opponent != null) {
+				opponent.send(Protocol.gameOver(Protocol.RESULT_ABANDONED,
+						winner));
+			}
+			end(session);
+		}
+	}
+
+	/**
+	 * Helper method that removes a game that is over from the lobby, so
+	 * its clients can start or join another one.
+	 *
+	 * @param session
+	 *            The game, whose lock is held
+	 */
+	private void end(final Session session) {
+		session.setOver();
+		sessions.remove(session.getId());
+		for (Player player : new Player[] {Player.PLAYER1, Player.PLAYER2}) {
+			Peer peer = session.getSeat(player);
+			if (peer != null) {
+				peer.seat(null, Player.NONE);
+			}
+		}
+	}
+
+	/**
+	 * Setter method that sets the listener every game that is created
+	 * from now on reports the cost of its moves to.
+	 *
+	 * @param engineListener
+	 *            The listener, or null to measure nothing
+	 */
+	void setEngineListener(final EngineListener engineListener) {
+		this.engineListener = engineListener;
+	}
+
+	/**
+	 * Getter method that returns how many games have not ended yet.
+	 *
+	 * @return int The number of games
+	 */
+	int getGames() {
+		return sessions.size();
+	}
+}
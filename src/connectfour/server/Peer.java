@@ -0,0 +1,60 @@
+package connectfour.server;
+
+import connectfour.Player;
+
+/**
+ * This class is a client connected to a game server, as seen by the
+ * lobby. Each kind of server has its own way of sending messages, so the
+ * lobby does not depend on how the connection is read or written.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+abstract class Peer {
+
+	/** The game the client is playing, or null. */
+	private volatile Session session;
+
+	/** The player the client plays as in its game. */
+	private volatile Player player = Player.NONE;
+
+	/**
+	 * Method that sends a message to the client. This may be called from
+	 * any thread and must not block for long.
+	 *
+	 * @param message
+	 *            The encoded message
+	 */
+	abstract void send(byte[] message);
+
+	/**
+	 * Getter method that returns the game the client is playing.
+	 *
+	 * @return Session The game, or null if the client is not in a game
+	 */
+	Session getSession() {
+		return session;
+	}
+
+	/**
+	 * Setter method that seats the client in a game.
+	 *
+	 * @param session
+	 *            The game, or null when the client leaves it
+	 * @param player
+	 *            The player the client plays as
+	 */
+	void seat(final Session session, final Player player) {
+		this.session = session;
+		this.player = player;
+	}
+
+	/**
+	 * Getter method that returns the player the client plays as.
+	 *
+	 * @return Player The player, or NONE if the client is not in a game
+	 */
+	Player getPlayer() {
+		return player;
+	}
+}
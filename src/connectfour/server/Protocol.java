@@ -0,0 +1,314 @@
+package connectfour.server;
+
+import connectfour.Player;
+
+/**
+ * This class defines the binary protocol that game servers and clients use.
+ * Every message starts with a one byte type, and the type alone decides how
+ * long the message is, so messages need no length prefix and a move takes
+ * only two bytes on the wire. Numbers that can be larger than a byte are
+ * sent as big-endian ints.
+ *
+ * <p>
+ * Messages from a client to the server:
+ * </p>
+ * <ul>
+ * <li>NEW_GAME rows, cols, connect, flags (5 bytes)</li>
+ * <li>JOIN game id (5 bytes)</li>
+ * <li>MOVE col (2 bytes)</li>
+ * <li>LEAVE (1 byte)</li>
+ * </ul>
+ *
+ * <p>
+ * Messages from the server to a client:
+ * </p>
+ * <ul>
+ * <li>WAITING game id (5 bytes)</li>
+ * <li>STARTED game id, player, rows, cols, connect (9 bytes)</li>
+ * <li>MOVED player, row, col (4 bytes)</li>
+ * <li>GAME_OVER result, winner (3 bytes)</li>
+ * <li>ERROR code (2 bytes)</li>
+ * </ul>
+ *
+ * <p>
+ * Players are sent as the ordinal of Player, and rows, columns and the
+ * length of a winning row as unsigned bytes. The first player always
+ * moves first.
+ * </p>
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class Protocol {
+
+	/** Creates a new game and takes its first seat. */
+	public static final byte NEW_GAME = 1;
+
+	/** Takes the free seat of a game another client created. */
+	public static final byte JOIN = 2;
+
+	/** Drops a piece into a column. */
+	public static final byte MOVE = 3;
+
+	/** Gives up the current game. */
+	public static final byte LEAVE = 4;
+
+	/** The game was created and is waiting for an opponent to join. */
+	public static final byte WAITING = 16;
+
+	/** Both seats of the game are taken and the game has started. */
+	public static final byte STARTED = 17;
+
+	/** A piece was dropped by either player. */
+	public static final byte MOVED = 18;
+
+	/** The game is over. */
+	public static final byte GAME_OVER = 19;
+
+	/** The last message could not be carried out. */
+	public static final byte ERROR = 20;
+
+	/** NEW_GAME flag that makes the server AI the opponent. */
+	public static final int FLAG_AI = 1;
+
+	/** NEW_GAME flag that makes the creator of the game move second. */
+	public static final int FLAG_SECOND = 2;
+
+	/** GAME_OVER result of a game that the winner won. */
+	public static final int RESULT_WON = 0;
+
+	/** GAME_OVER result of a game that ended in a tie. */
+	public static final int RESULT_TIE = 1;
+
+	/** GAME_OVER result of a game that the opponent left. */
+	public static final int RESULT_ABANDONED = 2;
+
+	/** ERROR code of a message that is not part of the protocol. */
+	public static final int ERROR_BAD_MESSAGE = 1;
+
+	/** ERROR code of a board size or rule that is not supported. */
+	public static final int ERROR_BAD_BOARD = 2;
+
+	/** ERROR code of a JOIN for a game that does not exist. */
+	public static final int ERROR_NO_SUCH_GAME = 3;
+
+	/** ERROR code of a JOIN for a game that has no free seat. */
+	public static final int ERROR_GAME_FULL = 4;
+
+	/** ERROR code of a MOVE made out of turn. */
+	public static final int ERROR_NOT_YOUR_TURN = 5;
+
+	/** ERROR code of a MOVE into a full or missing column. */
+	public static final int ERROR_ILLEGAL_MOVE = 6;
+
+	/** ERROR code of a NEW_GAME or JOIN while already in a game. */
+	public static final int ERROR_ALREADY_PLAYING = 7;
+
+	/** ERROR code of a MOVE or LEAVE while not in a game. */
+	public static final int ERROR_NOT_PLAYING = 8;
+
+	/** Length of the longest message. */
+	public static final int MAX_LENGTH = 9;
+
+	/**
+	 * Constructor that is private because this class only holds
+	 * constants and helper methods.
+	 *
+	 */
+	private Protocol() {
+	}
+
+	/**
+	 * Method that returns how long a message of a type is.
+	 *
+	 * @param type
+	 *            The first byte of the message
+	 * @return int The length of the message in bytes, including the type,
+	 *         or -1 if the type is not part of the protocol
+	 */
+	public static int getLength(final byte type) {
+		switch (type) {
+		case NEW_GAME:
+		case JOIN:
+		case WAITING:
+			return 5;
+		case MOVE:
+		case ERROR:
+			return 2;
+		case LEAVE:
+			return 1;
+		case STARTED:
+			return 9;
+		case MOVED:
+			return 4;
+		case GAME_OVER:
+			return 3;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Method that encodes a NEW_GAME message.
+	 *
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @param flags
+	 *            FLAG_AI and FLAG_SECOND, or zero
+	 * @return byte[] The message
+	 */
+	public static byte[] newGame(final int rows, final int cols,
+			final int connect, final int flags) {
+		return new byte[] {NEW_GAME, (byte) rows, (byte) cols,
+			(byte) connect, (byte) flags};
+	}
+
+	/**
+	 * Method that encodes a JOIN message.
+	 *
+	 * @param gameId
+	 *            The game to join
+	 * @return byte[] The message
+	 */
+	public static byte[] join(final int gameId) {
+		return withInt(JOIN, gameId, 5);
+	}
+
+	/**
+	 * Method that encodes a MOVE message.
+	 *
+	 * @param col
+	 *            The column the piece is dropped in
+	 * @return byte[] The message
+	 */
+	public static byte[] move(final int col) {
+		return new byte[] {MOVE, (byte) col};
+	}
+
+	/**
+	 * Method that encodes a LEAVE message.
+	 *
+	 * @return byte[] The message
+	 */
+	public static byte[] leave() {
+		return new byte[] {LEAVE};
+	}
+
+	/**
+	 * Method that encodes a WAITING message.
+	 *
+	 * @param gameId
+	 *            The game that was created
+	 * @return byte[] The message
+	 */
+	public static byte[] waiting(final int gameId) {
+		return withInt(WAITING, gameId, 5);
+	}
+
+	/**
+	 * Method that encodes a STARTED message.
+	 *
+	 * @param gameId
+	 *            The game that started
+	 * @param player
+	 *            The player the receiving client plays as
+	 * @param rows
+	 *            The number of rows on the board
+	 * @param cols
+	 *            The number of columns on the board
+	 * @param connect
+	 *            How many pieces in a row win the game
+	 * @return byte[] The message
+	 */
+	public static byte[] started(final int gameId, final Player player,
+			final int rows, final int cols, final int connect) {
+		byte[] message = withInt(STARTED, gameId, 9);
+		message[5] = (byte) player.ordinal();
+		message[6] = (byte) rows;
+		message[7] = (byte) cols;
+		message[8] = (byte) connect;
+		return message;
+	}
+
+	/**
+	 * Method that encodes a MOVED message.
+	 *
+	 * @param player
+	 *            The player who dropped the piece
+	 * @param row
+	 *            The row the piece landed in, where row zero is the top
+	 *            of the board
+	 * @param col
+	 *            The column the piece was dropped in
+	 * @return byte[] The message
+	 */
+	public static byte[] moved(final Player player, final int row,
+			final int col) {
+		return new byte[] {MOVED, (byte) player.ordinal(), (byte) row,
+			(byte) col};
+	}
+
+	/**
+	 * Method that encodes a GAME_OVER message.
+	 *
+	 * @param result
+	 *            RESULT_WON, RESULT_TIE or RESULT_ABANDONED
+	 * @param winner
+	 *            The player who won, or NONE after a tie
+	 * @return byte[] The message
+	 */
+	public static byte[] gameOver(final int result, final Player winner) {
+		return new byte[] {GAME_OVER, (byte) result,
+			(byte) winner.ordinal()};
+	}
+
+	/**
+	 * Method that encodes an ERROR message.
+	 *
+	 * @param code
+	 *            One of the ERROR codes
+	 * @return byte[] The message
+	 */
+	public static byte[] error(final int code) {
+		return new byte[] {ERROR, (byte) code};
+	}
+
+	/**
+	 * Method that decodes a player that was sent as its ordinal.
+	 *
+	 * @param ordinal
+	 *            The byte that was sent
+	 * @return Player The player, or NONE if the byte is not a player
+	 */
+	public static Player toPlayer(final int ordinal) {
+		Player[] players = Player.values();
+		return ordinal >= 0 && ordinal < players.length ? players[ordinal]
+				: Player.NONE;
+	}
+
+	/**
+	 * Helper method that encodes a message that starts with an int.
+	 *
+	 * @param type
+	 *            The type of the message
+	 * @param value
+	 *            The int that follows the type
+	 * @param length
+	 *            The length of the message
+	 * @return byte[] The message, with the rest of it left zero
+	 */
+	private static byte[] withInt(final byte type, final int value,
+			final int length) {
+		byte[] message = new byte[length];
+		message[0] = type;
+		message[1] = (byte) (value >>> 24);
+		message[2] = (byte) (value >>> 16);
+		message[3] = (byte) (value >>> 8);
+		message[4] = (byte) value;
+		return message;
+	}
+}
@@ -0,0 +1,319 @@
+package connectfour.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import connectfour.GameEngine;
+import connectfour.GameStatus;
+import connectfour.Player;
+
+/**
+ * This class puts the same load on the selector based GameServer and the
+ * ThreadedGameServer and prints how each of them copes as CSV. Idle
+ * clients are connected first, like players who are thinking about a
+ * move, and then pairs of clients play random games as fast as the server
+ * lets them. The round trip of every move is timed from sending it to the
+ * server echoing it back.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public final class ServerLoadTest {
+
+	/** The header of the CSV that is printed. */
+	private static final String HEADER = "server,idle,pairs,games,moves,"
+			+ "moves_per_second,mean_ms,p50_ms,p99_ms,max_ms,threads";
+
+	/** How many seconds a client waits for an answer before giving up. */
+	private static final long TIMEOUT = 30;
+
+	/** How many idle clients are connected by default. */
+	private static final int DEFAULT_IDLE = 2000;
+
+	/** How many pairs of clients play at once by default. */
+	private static final int DEFAULT_PAIRS = 64;
+
+	/** How many games each pair plays by default. */
+	private static final int DEFAULT_GAMES = 20;
+
+	/** How many idle clients are connected to the server. */
+	private final int idle;
+
+	/** How many pairs of clients play at once. */
+	private final int pairs;
+
+	/** How many games each pair plays. */
+	private final int games;
+
+	/**
+	 * This class is one client of the load test. It keeps the messages of
+	 * the server in a queue, so the pair it belongs to can wait for them in
+	 * order.
+	 */
+	private static final class LoadClient implements GameClient.Listener {
+
+		/** The messages received, as their type and their fields. */
+		private final BlockingQueue<int[]> messages =
+				new LinkedBlockingQueue<int[]>();
+
+		/** The connection to the server. */
+		private final GameClient client;
+
+		/**
+		 * Constructor that instantiates a new client and connects it.
+		 *
+		 * @param port
+		 *            The port of the server
+		 * @throws IOException
+		 *             If the server cannot be reached
+		 */
+		LoadClient(final int port) throws IOException {
+			this.client = new GameClient("127.0.0.1", port, this);
+		}
+
+		/**
+		 * Method that waits for the next message of the server.
+		 *
+		 * @param type
+		 *            The type of message that is expected
+		 * @return int[] The type and the fields of the message
+		 * @throws InterruptedException
+		 *             If the wait is interrupted
+		 */
+		int[] next(final byte type) throws InterruptedException {
+			int[] message = messages.poll(TIMEOUT, TimeUnit.SECONDS);
+			if (message == null || message[0] != type) {
+				throw new IllegalStateException("Expected message " + type
+						+ " but got " + (message == null ? "nothing"
+						: Arrays.toString(message)));
+			}
+			return message;
+		}
+
+		@Override
+		public void waiting(final int gameId) {
+			messages.add(new int[] {Protocol.WAITING, gameId});
+		}
+
+		@Override
+		public void started(final int gameId, final Player player,
+				final int rows, final int cols, final int connect) {
+			messages.add(new int[] {Protocol.STARTED, gameId});
+		}
+
+		@Override
+		public void moved(final Player player, final int row, final int col) {
+			messages.add(new int[] {Protocol.MOVED, row, col});
+		}
+
+		@Override
+		public void gameOver(final int result, final Player winner) {
+			messages.add(new int[] {Protocol.GAME_OVER, result});
+		}
+
+		@Override
+		public void error(final int code) {
+			messages.add(new int[] {Protocol.ERROR, code});
+		}
+
+		@Override
+		public void disconnected() {
+			// A pair only ends after its games, so this is not waited on.
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new load test.
+	 *
+	 * @param idle
+	 *            How many idle clients are connected to the server
+	 * @param pairs
+	 *            How many pairs of clients play at once
+	 * @param games
+	 *            How many games each pair plays
+	 */
+	public ServerLoadTest(final int idle, final int pairs, final int games) {
+		this.idle = idle;
+		this.pairs = pairs;
+		this.games = games;
+	}
+
+	/**
+	 * Main method that runs the load test against both servers.
+	 *
+	 * @param args
+	 *            Optionally the number of idle clients, the number of
+	 *            playing pairs and the games each pair plays
+	 * @throws Exception
+	 *             If a server fails or a client gets a wrong answer
+	 */
+	public static void main(final String[] args) throws Exception {
+		int idle = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_IDLE;
+		int pairs = args.length > 1 ? Integer.parseInt(args[1])
+				: DEFAULT_PAIRS;
+		int games = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_GAMES;
+		ServerLoadTest test = new ServerLoadTest(idle, pairs, games);
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+		System.out.println(HEADER);
+		GameServer selector = new GameServer(address, 1,
+				GameServer.DEFAULT_AI_TIME);
+		System.out.println(test.run("selector", selector, selector.getPort()));
+		ThreadedGameServer threaded = new ThreadedGameServer(address, 1,
+				GameServer.DEFAULT_AI_TIME);
+		System.out.println(test.run(threaded.isVirtual() ? "virtual"
+				: "platform", threaded, threaded.getPort()));
+	}
+
+	/**
+	 * Method that runs the load against one server and closes it.
+	 *
+	 * @param name
+	 *            The name of the server in the CSV
+	 * @param server
+	 *            The server, which is not running yet
+	 * @param port
+	 *            The port the server listens on
+	 * @return String The CSV line of the results
+	 * @throws Exception
+	 *             If a client gets a wrong answer
+	 */
+	private <T extends Runnable & Closeable> String run(final String name,
+			final T server, final int port) throws Exception {
+		Thread serverThread = new Thread(server, name + " server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		List<SocketChannel> idleClients = new ArrayList<SocketChannel>();
+		ExecutorService pool = Executors.newFixedThreadPool(pairs);
+		try {
+			int threadsBefore = Thread.activeCount();
+			for (int i = 0; i < idle; i++) {
+				idleClients.add(SocketChannel.open(
+						new InetSocketAddress("127.0.0.1", port)));
+			}
+			// Give a thread per connection server time to start them all.
+			Thread.sleep(500);
+			int threads = Thread.activeCount() - threadsBefore;
+			List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+			long start = System.nanoTime();
+			for (int i = 0; i < pairs; i++) {
+				final long seed = i;
+				results.add(pool.submit(() -> playGames(port, seed)));
+			}
+			List<long[]> latencies = new ArrayList<long[]>();
+			int moves = 0;
+			for (Future<long[]> result : results) {
+				long[] pairLatencies = result.get();
+				latencies.add(pairLatencies);
+				moves += pairLatencies.length;
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long[] all = new long[moves];
+			int next = 0;
+			for (long[] pairLatencies : latencies) {
+				System.arraycopy(pairLatencies, 0, all, next,
+						pairLatencies.length);
+				next += pairLatencies.length;
+			}
+			Arrays.sort(all);
+			long total = 0;
+			for (long latency : all) {
+				total += latency;
+			}
+			return String.format("%s,%d,%d,%d,%d,%.0f,%.3f,%.3f,%.3f,%.3f,%d",
+					name, idle, pairs, pairs * games, moves, moves / seconds,
+					total / 1e6 / Math.max(1, moves), percentile(all, 0.5),
+					percentile(all, 0.99), percentile(all, 1.0), threads);
+		} finally {
+			pool.shutdownNow();
+			for (SocketChannel channel : idleClients) {
+				channel.close();
+			}
+			server.close();
+		}
+	}
+
+	/**
+	 * Helper method that has one pair of clients play random games against
+	 * each other.
+	 *
+	 * @param port
+	 *            The port of the server
+	 * @param seed
+	 *            The seed of the random moves
+	 * @return long[] The round trip of every move in nanoseconds
+	 * @throws Exception
+	 *             If a client gets a wrong answer
+	 */
+	private long[] playGames(final int port, final long seed)
+			throws Exception {
+		Random random = new Random(seed);
+		LoadClient host = new LoadClient(port);
+		LoadClient guest = new LoadClient(port);
+		long[] latencies = new long[games * 42];
+		int moves = 0;
+		try {
+			for (int game = 0; game < games; game++) {
+				host.client.newGame(6, 7, 4, false, false);
+				guest.client.join(host.next(Protocol.WAITING)[1]);
+				host.next(Protocol.STARTED);
+				guest.next(Protocol.STARTED);
+				GameEngine mirror = new GameEngine();
+				LoadClient mover = host;
+				LoadClient other = guest;
+				while (mirror.status() == GameStatus.NotOverYet) {
+					int col;
+					do {
+						col = random.nextInt(mirror.getCols());
+					} while (!mirror.canPlay(col));
+					long start = System.nanoTime();
+					mover.client.move(col);
+					mover.next(Protocol.MOVED);
+					latencies[moves++] = System.nanoTime() - start;
+					other.next(Protocol.MOVED);
+					mirror.play(col);
+					LoadClient swap = mover;
+					mover = other;
+					other = swap;
+				}
+				host.next(Protocol.GAME_OVER);
+				guest.next(Protocol.GAME_OVER);
+			}
+		} finally {
+			host.client.close();
+			guest.client.close();
+		}
+		return Arrays.copyOf(latencies, moves);
+	}
+
+	/**
+	 * Helper method that returns a percentile of sorted latencies.
+	 *
+	 * @param sorted
+	 *            The latencies in nanoseconds, sorted
+	 * @param fraction
+	 *            The percentile as a fraction
+	 * @return double The latency in milliseconds, or zero if there are none
+	 */
+	private static double percentile(final long[] sorted,
+			final double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
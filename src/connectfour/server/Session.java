@@ -0,0 +1,174 @@
+package connectfour.server;
+
+import connectfour.GameEngine;
+import connectfour.Player;
+
+/**
+ * This class is one game hosted by a server: the engine that plays it and
+ * the clients in its two seats. A seat is empty while the game waits for
+ * an opponent, and the second seat is always empty when the server AI is
+ * the opponent. Every method of a session has to be called while holding
+ * its lock.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+final class Session {
+
+	/** The number clients use to join the game. */
+	private final int id;
+
+	/** The headless engine that plays the game. */
+	private final GameEngine engine;
+
+	/** The clients in the seat of each player. */
+	private final Peer[] seats = new Peer[2];
+
+	/** The player the server AI plays as, or NONE. */
+	private final Player aiPlayer;
+
+	/** Whether or not the AI is searching for its move. */
+	private boolean thinking;
+
+	/** Whether or not the game is over and gone from the lobby. */
+	private boolean over;
+
+	/**
+	 * Constructor that instantiates a new session.
+	 *
+	 * @param id
+	 *            The number clients use to join the game
+	 * @param engine
+	 *            The engine that plays the game
+	 * @param aiPlayer
+	 *            The player the server AI plays as, or NONE
+	 */
+	Session(final int id, final GameEngine engine, final Player aiPlayer) {
+		this.id = id;
+		this.engine = engine;
+		this.aiPlayer = aiPlayer;
+	}
+
+	/**
+	 * Method that sends a message to every client in the game.
+	 *
+	 * @param message
+	 *            The encoded message
+	 */
+	void broadcast(final byte[] message) {
+		for (Peer peer : seats) {
+			if (peer != null) {
+				peer.send(message);
+			}
+		}
+	}
+
+	/**
+	 * Method that checks if both seats are taken, by clients or the AI.
+	 *
+	 * @return boolean If the game has started
+	 */
+	boolean isStarted() {
+		for (Player player : new Player[] {Player.PLAYER1, Player.PLAYER2}) {
+			if (player != aiPlayer && getSeat(player) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method that checks if it is the AI's turn.
+	 *
+	 * @return boolean If the AI has to move next
+	 */
+	boolean isAiTurn() {
+		return aiPlayer != Player.NONE && engine.getPlayer() == aiPlayer;
+	}
+
+	/**
+	 * Getter method that returns the client in the seat of a player.
+	 *
+	 * @param player
+	 *            The player
+	 * @return Peer The client, or null if the seat is empty or the AI's
+	 */
+	Peer getSeat(final Player player) {
+		return seats[player.ordinal()];
+	}
+
+	/**
+	 * Setter method that puts a client in the seat of a player.
+	 *
+	 * @param player
+	 *            The player
+	 * @param peer
+	 *            The client, or null to empty the seat
+	 */
+	void setSeat(final Player player, final Peer peer) {
+		seats[player.ordinal()] = peer;
+	}
+
+	/**
+	 * Getter method that returns the number clients join the game with.
+	 *
+	 * @return int The id of the game
+	 */
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * Getter method that returns the engine that plays the game.
+	 *
+	 * @return GameEngine The engine
+	 */
+	GameEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Getter method that returns the player the server AI plays as.
+	 *
+	 * @return Player The AI player, or NONE if two clients play
+	 */
+	Player getAiPlayer() {
+		return aiPlayer;
+	}
+
+	/**
+	 * Getter method that returns whether or not the AI is searching.
+	 *
+	 * @return boolean If the AI is thinking
+	 */
+	boolean isThinking() {
+		return thinking;
+	}
+
+	/**
+	 * Setter method that sets whether or not the AI is searching.
+	 *
+	 * @param thinking
+	 *            If the AI is thinking
+	 */
+	void setThinking(final boolean thinking) {
+		this.thinking = thinking;
+	}
+
+	/**
+	 * Getter method that returns whether or not the game is over.
+	 *
+	 * @return boolean If the game is over
+	 */
+	boolean isOver() {
+		return over;
+	}
+
+	/**
+	 * Setter method that marks the game as over.
+	 *
+	 */
+	void setOver() {
+		this.over = true;
+	}
+}
@@ -0,0 +1,386 @@
+package connectfour.server;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+
+import connectfour.EngineListener;
+import connectfour.EngineMetrics;
+import connectfour.TranspositionTable;
+
+/**
+ * This class is a game server that serves every client connection on a
+ * thread of its own with plain blocking reads. On a Java runtime with
+ * virtual threads those threads are virtual, so a client waiting for a
+ * human move parks cheaply and the server scales like the selector based
+ * GameServer while its code reads top to bottom. Older runtimes fall back
+ * to platform threads. AI searches never run on the connection threads:
+ * they are dispatched to a bounded pool of platform threads, so a long
+ * search does not pin the carriers the virtual threads run on. Messages
+ * are queued on their connection and written by a writer thread that the
+ * connection keeps for as long as it is open, since the lobby sends them
+ * while holding the monitor of a game: a blocking write there would pin
+ * the carrier, and a client that reads slowly would hold up its opponent
+ * and the AI pool.
+ *
+ * @author Matthew Shampine
+ * @version 1.0
+ */
+public class ThreadedGameServer implements Runnable, Closeable {
+
+	/** How many megabytes the shared transposition table uses. */
+	private static final int TABLE_SIZE = 64;
+
+	/** How long to wait before accepting again after accept failed. */
+	private static final long ACCEPT_RETRY_MILLIS = 100;
+
+	/** The message that tells a writer thread to close its connection. */
+	private static final byte[] END_OF_OUTPUT = new byte[0];
+
+	/** The socket new connections are accepted on. */
+	private final ServerSocket serverSocket;
+
+	/** The factory the thread of each connection comes from. */
+	private final ThreadFactory threadFactory;
+
+	/** Whether or not the threads of the connections are virtual. */
+	private final boolean virtual;
+
+	/** The pool AI searches run on. */
+	private final ExecutorService aiPool;
+
+	/** The games and the rules of the protocol. */
+	private final Lobby lobby;
+
+	/** Every connection that is open. */
+	private final Set<Connection> connections = ConcurrentHashMap
+			.newKeySet();
+
+	/** Whether or not the server has been closed. */
+	private volatile boolean closed;
+
+	/**
+	 * This class is one client connection, with the loop its reading
+	 * thread runs and the loop its writer thread runs. Sending a message
+	 * only queues it, and the writer thread writes the messages in order,
+	 * so the blocking writes never happen on a thread that holds the
+	 * monitor of a game.
+	 */
+	private final class Connection extends Peer implements Runnable {
+
+		/** The socket of the client. */
+		private final Socket socket;
+
+		/** The stream messages are written to. */
+		private final OutputStream out;
+
+		/** The messages that have not been written yet, in order. */
+		private final BlockingQueue<byte[]> pending =
+				new LinkedBlockingQueue<byte[]>();
+
+		/**
+		 * Constructor that instantiates a new connection.
+		 *
+		 * @param socket
+		 *            The socket of the client
+		 * @throws IOException
+		 *             If the socket cannot be written to
+		 */
+		Connection(final Socket socket) throws IOException {
+			this.socket = socket;
+			this.out = socket.getOutputStream();
+		}
+
+		@Override
+		void send(final byte[] message) {
+			pending.add(message);
+		}
+
+		/**
+		 * Method that writes the queued messages as they come in, on the
+		 * writer thread, until the connection is done. The messages queued
+		 * before that are still written, and then the socket is closed. If
+		 * the socket breaks, the rest of the messages are dropped.
+		 *
+		 */
+		void write() {
+			try {
+				for (byte[] message = pending.take();
+						message != END_OF_OUTPUT; message = pending.take()) {
+					out.write(message);
+				}
+			} catch (IOException e) {
+				// The reading thread sees the broken socket and cleans up.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				closeSocket();
+			}
+		}
+
+		/**
+		 * Method that reads messages until the client goes away and
+		 * carries out each of them. A client that sends a message that is
+		 * not part of the protocol is disconnected.
+		 *
+		 */
+		@Override
+		public void run() {
+			byte[] bytes = new byte[Protocol.MAX_LENGTH];
+			ByteBuffer message = ByteBuffer.wrap(bytes);
+			try {
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(socket.getInputStream()));
+				int type;
+				while ((type = in.read()) >= 0) {
+					int length = Protocol.getLength((byte) type);
+					if (length < 0) {
+						send(Protocol.error(Protocol.ERROR_BAD_MESSAGE));
+						break;
+					}
+					bytes[0] = (byte) type;
+					in.readFully(bytes, 1, length - 1);
+					message.clear();
+					if (!lobby.handle(this, message)) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				// The connection was closed by either side or broke.
+			} finally {
+				pending.add(END_OF_OUTPUT);
+				connections.remove(this);
+				lobby.disconnected(this);
+			}
+		}
+
+		/**
+		 * Helper method that closes the socket of the client.
+		 *
+		 */
+		void closeSocket() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// The connection is gone either way.
+			}
+		}
+	}
+
+	/**
+	 * Constructor that instantiates a new server listening on an address.
+	 * The server does not accept connections until it is run.
+	 *
+	 * @param address
+	 *            The address to listen on, where port zero picks any free
+	 *            port
+	 * @param aiThreads
+	 *            How many platform threads AI searches run on
+	 * @param aiTime
+	 *            How many milliseconds the AI thinks about a move
+	 * @throws IOException
+	 *             If the server cannot listen on the address
+	 */
+	public ThreadedGameServer(final InetSocketAddress address,
+			final int aiThreads, final long aiTime) throws IOException {
+		this.serverSocket = new ServerSocket();
+		serverSocket.bind(address, 1024);
+		ThreadFactory factory = virtualThreadFactory();
+		this.virtual = factory != null;
+		this.threadFactory = virtual ? factory : runnable -> {
+			Thread thread = new Thread(runnable, "GameServer session");
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.aiPool = Executors.newFixedThreadPool(aiThreads);
+		this.lobby = new Lobby(aiPool, aiTime,
+				new TranspositionTable(TABLE_SIZE));
+	}
+
+	/**
+	 * Main method that runs a server until the process is stopped.
+	 *
+	 * @param args
+	 *            Optionally the port, the number of AI threads and the
+	 *            milliseconds the AI thinks about a move
+	 * @throws IOException
+	 *             If the server cannot listen on the port
+	 * @throws JMException
+	 *             If the engine metrics cannot be registered
+	 */
+	public static void main(final String[] args) throws IOException,
+			JMException {
+		int port = args.length > 0 ? Integer.parseInt(args[0])
+				: GameServer.DEFAULT_PORT;
+		int aiThreads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		long aiTime = args.length > 2 ? Long.parseLong(args[2])
+				: GameServer.DEFAULT_AI_TIME;
+		ThreadedGameServer server = new ThreadedGameServer(
+				new InetSocketAddress(port), aiThreads, aiTime);
+		EngineMetrics metrics = new EngineMetrics();
+		metrics.register("ThreadedGameServer");
+		server.setEngineListener(metrics);
+		System.out.println("Listening on port " + server.getPort()
+				+ (server.isVirtual() ? " with virtual threads"
+				: " with platform threads"));
+		server.run();
+	}
+
+	/**
+	 * Helper method that looks up the factory for virtual threads. The
+	 * code is built for Java 8, so the API is found by reflection.
+	 *
+	 * @return ThreadFactory The factory, or null if the runtime has no
+	 *         virtual threads
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+			virtual = builder.getMethod("name", String.class, long.class)
+					.invoke(virtual, "GameServer session ", 0L);
+			return (ThreadFactory) builder.getMethod("factory")
+					.invoke(virtual);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Method that accepts connections on the calling thread until the
+	 * server is closed, and starts a reading and a writer thread for each
+	 * of them. A connection that fails to be set up, such as one reset by
+	 * its client, is dropped on its own. If accepting itself fails, such as
+	 * when the process is out of file descriptors, the failure is logged
+	 * and the server waits a moment before it tries again.
+	 *
+	 */
+	@Override
+	public void run() {
+		boolean failing = false;
+		try {
+			while (!closed && !serverSocket.isClosed()) {
+				Socket socket;
+				try {
+					socket = serverSocket.accept();
+					failing = false;
+				} catch (IOException e) {
+					if (closed || serverSocket.isClosed()) {
+						break;
+					}
+					if (!failing) {
+						System.err.println("Accept failed, retrying: " + e);
+						failing = true;
+					}
+					Thread.sleep(ACCEPT_RETRY_MILLIS);
+					continue;
+				}
+				Connection connection;
+				try {
+					socket.setTcpNoDelay(true);
+					connection = new Connection(socket);
+				} catch (IOException e) {
+					try {
+						socket.close();
+					} catch (IOException closeFailed) {
+						// The connection is gone either way.
+					}
+					continue;
+				}
+				connections.add(connection);
+				if (closed) {
+					connection.closeSocket();
+				}
+				threadFactory.newThread(connection).start();
+				threadFactory.newThread(connection::write).start();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Getter method that returns the port the server listens on.
+	 *
+	 * @return int The port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Getter method that returns whether or not connections run on
+	 * virtual threads.
+	 *
+	 * @return boolean If the threads are virtual
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Setter method that sets the listener every game that is created
+	 * from now on reports the cost of its moves to, such as EngineMetrics.
+	 *
+	 * @param engineListener
+	 *            The listener, or null to measure nothing
+	 */
+	public void setEngineListener(final EngineListener engineListener) {
+		lobby.setEngineListener(engineListener);
+	}
+
+	/**
+	 * Getter method that returns how many games have not ended yet.
+	 *
+	 * @return int The number of games
+	 */
+	public int getGames() {
+		return lobby.getGames();
+	}
+
+	/**
+	 * Getter method that returns how many clients are connected.
+	 *
+	 * @return int The number of connections
+	 */
+	public int getConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Method that stops the server and closes every connection. The thread
+	 * of each connection ends once its socket is closed.
+	 *
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		aiPool.shutdownNow();
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// The server is going away either way.
+		}
+		for (Connection connection : connections) {
+			connection.closeSocket();
+		}
+	}
+}
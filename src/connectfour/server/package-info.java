@@ -0,0 +1,15 @@
+/**
+ * This package hosts connect four games over the network. It holds two
+ * servers that share the same lobby, one on a single selector thread and
+ * one with a thread per connection, the binary protocol that the servers
+ * and their clients speak, a client that a user interface can play remote
+ * games through, and a load test that compares the two servers.
+ *
+ */
+
+/**
+ * @author Matthew Shampine
+ * @version 1.0
+ *
+ */
+package connectfour.server;